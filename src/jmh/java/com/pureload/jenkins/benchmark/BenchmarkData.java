@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Generators of synthetic PureLoad results used by the benchmarks.
+ */
+public class BenchmarkData {
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private BenchmarkData() {
+   }
+
+   /**
+    * Write JUnit report with given number of testcases. Every other testcase is a KPI,
+    * with a system-out block of (about) systemOutLength characters.
+    */
+   public static void writeJUnitReport(File file, int testCases, int systemOutLength) throws IOException {
+      try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF8))) {
+         w.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+         w.write("<!--PureLoad JUnit Report-->\n<testsuites>\n");
+         w.write("  <testsuite name=\"benchmark.plc\" timestamp=\"2017-12-12T11:16:38.961\" time=\"33\" tests=\"");
+         w.write(Integer.toString(testCases));
+         w.write("\" failures=\"0\" errors=\"0\" hostname=\"localhost\">\n");
+         for (int i = 0; i < testCases; i++) {
+            if ((i % 2) == 0) {
+               w.write("    <testcase classname=\"Scenario.Scenario" + i + "\" name=\"Scenario" + i +
+                       "\" status=\"Ok\" time=\"" + (i % 1000) + "\" type=\"\">\n    </testcase>\n");
+            }
+            else {
+               writeKpi(w, i, systemOutLength);
+            }
+         }
+         w.write("  </testsuite>\n</testsuites>\n");
+      }
+   }
+
+   private static void writeKpi(Writer w, int i, int systemOutLength) throws IOException {
+      boolean failed = (i % 10) == 1;
+      w.write("    <testcase classname=\"KPI.KPI " + i + "\" name=\"KPI " + i + " (Summary Scenario0/SleepTask)\" status=\"" +
+              (failed ? "Failed" : "Ok") + "\" time=\"0\" type=\"Summary\">\n");
+      if (failed) {
+         w.write("      <failure type=\"Summary\" message=\"Threshold breached; value &gt; threshold max\">\n" +
+                 "      </failure>\n");
+      }
+      w.write("      <system-out>\n        KpiResult {kpi=Kpi {id=" + i + ", name='KPI " + i +
+              "', type=Summary, action=None, path='Scenario0/SleepTask', metric='Average', threshold=0/900/10}, " +
+              "timestamp=1513073823976, value=" + (i % 1200) + ", status=" + (failed ? "Failed" : "Ok") +
+              ", msg='Threshold breached; value &gt; threshold max'}\n");
+      // Pad with log like lines, as seen in large KPI outputs
+      int written = 0;
+      while (written < systemOutLength) {
+         String line = "        Sample " + written + ": response time within limits\n";
+         w.write(line);
+         written += line.length();
+      }
+      w.write("      </system-out>\n    </testcase>\n");
+   }
+
+   /**
+    * @return execution report (report.html) of about size bytes. The total summary is placed
+    *         after the padding if summaryLast is set, otherwise before it.
+    */
+   public static byte[] createExecutionReport(int size, boolean summaryLast) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(size + 4096);
+      Writer w = new OutputStreamWriter(out, UTF8);
+      w.write("<!DOCTYPE html>\n<html>\n<head>\n  <meta charset=\"UTF-8\">\n" +
+              "  <title>PureLoad Execution Report</title>\n</head>\n<body>\n" +
+              "<h2>Execution Report: benchmark.plc</h2>\n");
+      if (!summaryLast) {
+         writeTotal(w);
+      }
+      w.write("<h3>Scenarios</h3>\n<table class=\"results\">\n");
+      int written = 0;
+      for (int i = 0; written < size; i++) {
+         String row = "  <tr><td>Scenario" + i + "</td><td>" + (i * 7) + "</td><td>1002</td><td>&#8212; \u00f6kning</td></tr>\n";
+         w.write(row);
+         written += row.length();
+      }
+      w.write("</table>\n");
+      if (summaryLast) {
+         writeTotal(w);
+      }
+      w.write("</body>\n</html>\n");
+      w.flush();
+      return out.toByteArray();
+   }
+
+   private static void writeTotal(Writer w) throws IOException {
+      w.write("<h3>Total</h3>\n<p>\n<table class=\"summary\">\n" +
+              "  <tr><th>Execution Time</th><td>18 s</td></tr>\n" +
+              "  <tr><th>Executed Scenarios</th><td>1 234</td></tr>\n" +
+              "</table>\n<p>Task summary:</p>\n<table class=\"results\">\n" +
+              "  <tr><th>Task</th><th>Count</th><th>Avg (ms)</th></tr>\n" +
+              "  <tr><td>SleepTask</td><td>1234</td><td>1002</td></tr>\n" +
+              "</table>\n");
+   }
+
+   /**
+    * Create artifact tree with fanOut directories per level down to depth levels.
+    * Every leaf directory at an even index is a result directory, with a small JUnit report.
+    * @return number of result directories created
+    */
+   public static int createArtifactTree(File root, int fanOut, int depth) throws IOException {
+      return createArtifactTree(root, fanOut, depth, 0);
+   }
+
+   private static int createArtifactTree(File dir, int fanOut, int depth, int index) throws IOException {
+      if (!dir.mkdirs() && !dir.isDirectory()) {
+         throw new IOException("Can not create: " + dir);
+      }
+      if (depth == 0) {
+         if ((index % 2) != 0) {
+            return 0;
+         }
+         File junitDir = new File(dir, "junit");
+         if (!junitDir.mkdirs()) {
+            throw new IOException("Can not create: " + junitDir);
+         }
+         writeJUnitReport(new File(junitDir, "junit-report.xml"), 2, 0);
+         return 1;
+      }
+      int count = 0;
+      for (int i = 0; i < fanOut; i++) {
+         count += createArtifactTree(new File(dir, "dir" + i), fanOut, depth - 1, i);
+      }
+      // Some files in each directory, like other artifacts
+      for (int i = 0; i < 2; i++) {
+         try (Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir, "file" + i + ".log")), UTF8)) {
+            w.write("log\n");
+         }
+      }
+      return count;
+   }
+
+   /** Delete file or directory tree. */
+   public static void delete(File file) {
+      File[] children = file.listFiles();
+      if (children != null) {
+         for (File child : children) {
+            delete(child);
+         }
+      }
+      if (!file.delete() && file.exists()) {
+         file.deleteOnExit();
+      }
+   }
+}
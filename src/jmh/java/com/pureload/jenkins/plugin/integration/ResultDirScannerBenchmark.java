@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.pureload.jenkins.benchmark.BenchmarkData;
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import jenkins.util.VirtualFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of finding result directories in synthetic artifact trees.
+ * Result directories are only counted, not parsed, unless parse is set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultDirScannerBenchmark {
+
+   /** Tree as fanOut:depth */
+   @Param({"10:2", "10:3", "4:6"})
+   public String tree;
+
+   /** Include patterns, empty for all */
+   @Param({"", "dir1/**"})
+   public String includes;
+
+   @Param({"false", "true"})
+   public boolean parse;
+
+   private File root;
+   private ResultDirScanner scanner;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      String[] parts = tree.split(":");
+      root = Files.createTempDirectory("artifacts").toFile();
+      BenchmarkData.createArtifactTree(root, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+      ResultDirScanner.ResultParser parser = parse ? new ResultDirParser() : new ResultDirScanner.ResultParser() {
+         @Override
+         public PureLoadResult parse(VirtualFile resultDir, String path, ResultDirState state) {
+            return new PureLoadResult(new JUnitReport(resultDir.getName()));
+         }
+      };
+      scanner = new ResultDirScanner(parser, includes, null, 0, null);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      BenchmarkData.delete(root);
+   }
+
+   @Benchmark
+   public List<ResultDirScanner.Outcome> scan() throws IOException {
+      return scanner.scan(VirtualFile.forFile(root));
+   }
+}
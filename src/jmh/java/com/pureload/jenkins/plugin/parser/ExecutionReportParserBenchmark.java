@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.parser;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import com.pureload.jenkins.benchmark.BenchmarkData;
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of extracting the total summary from (multi MB) execution reports (report.html).
+ * The report is kept in memory, so only the extraction is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionReportParserBenchmark {
+
+   /** Approximate size of report (bytes) */
+   @Param({"100000", "4000000", "16000000"})
+   public int size;
+
+   /** Total summary placed last in report (worst case) or first? */
+   @Param({"true", "false"})
+   public boolean summaryLast;
+
+   private byte[] report;
+
+   @Setup
+   public void setUp() throws Exception {
+      report = BenchmarkData.createExecutionReport(size, summaryLast);
+   }
+
+   @Benchmark
+   public PureLoadResult parseTotalSummary() throws Exception {
+      PureLoadResult result = new PureLoadResult(new JUnitReport("junit-report.xml"));
+      ExecutionReportParser.parseTotalSummary(new ByteArrayInputStream(report), ExecutionReportParser.REPORT_CHARSET,
+                                              result);
+      return result;
+   }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.parser;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import com.pureload.jenkins.benchmark.BenchmarkData;
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of parsing generated JUnit reports, using both parser backends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JUnitParserBenchmark {
+
+   @Param({"10", "1000", "100000"})
+   public int testCases;
+
+   /** Length of system-out of each KPI testcase */
+   @Param({"200", "20000"})
+   public int systemOutLength;
+
+   @Param({"SAX", "STAX"})
+   public JUnitParser.Backend backend;
+
+   private File file;
+
+   @Setup(Level.Trial)
+   public void setUp() throws Exception {
+      file = File.createTempFile("junit-report", ".xml");
+      BenchmarkData.writeJUnitReport(file, testCases, systemOutLength);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      BenchmarkData.delete(file);
+   }
+
+   @Benchmark
+   public JUnitReport parse() throws Exception {
+      return JUnitParser.parse(file, backend);
+   }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.PrintWriter;
+
+/**
+ * Writing of JSON values, for responses that are streamed without building a JSON object first.
+ */
+final class Json {
+
+   private Json() {
+   }
+
+   /** Write string value (escaped), or null. */
+   static void writeString(PrintWriter w, String s) {
+      if (s == null) {
+         w.write("null");
+         return;
+      }
+      w.write('"');
+      for (int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         switch (c) {
+            case '"':
+               w.write("\\\"");
+               break;
+            case '\\':
+               w.write("\\\\");
+               break;
+            case '\n':
+               w.write("\\n");
+               break;
+            case '\r':
+               w.write("\\r");
+               break;
+            case '\t':
+               w.write("\\t");
+               break;
+            default:
+               if ((c < 0x20) || (c == '<') || (c == '>') || (c == '&')) {
+                  w.write(String.format("\\u%04x", (int) c));
+               }
+               else {
+                  w.write(c);
+               }
+         }
+      }
+      w.write('"');
+   }
+
+   /** Write number value, or null if not a number. */
+   static void writeNumber(PrintWriter w, double value) {
+      w.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+   }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+
+/**
+ * One page of (optionally filtered) KPI results.
+ */
+@SuppressWarnings("WeakerAccess")
+public class KpiPage {
+   /** Default number of KPIs per page. */
+   static final int DEFAULT_COUNT = 50;
+   /** Max number of KPIs per page. */
+   static final int MAX_COUNT = 500;
+
+   private final List<TestCaseResult> kpis;
+   private final int start;
+   private final int count;
+   private final int total;
+   private final String filter;
+   private final boolean failedOnly;
+
+   private KpiPage(List<TestCaseResult> kpis, int start, int count, int total, String filter, boolean failedOnly) {
+      this.kpis = kpis;
+      this.start = start;
+      this.count = count;
+      this.total = total;
+      this.filter = filter;
+      this.failedOnly = failedOnly;
+   }
+
+   /**
+    * Create page of KPI results.
+    * @param allKpis all KPI results
+    * @param start index of first KPI (after filtering)
+    * @param count max number of KPIs
+    * @param filter text KPI names must contain (ignoring case), or null for all
+    * @param failedOnly only include failed KPIs?
+    */
+   static KpiPage of(List<TestCaseResult> allKpis, int start, int count, String filter, boolean failedOnly) {
+      count = (count > 0) ? Math.min(count, MAX_COUNT) : DEFAULT_COUNT;
+      start = Math.max(0, start);
+      String lowerFilter = (filter != null) ? filter.toLowerCase(Locale.ENGLISH) : null;
+      if ((lowerFilter == null) && !failedOnly) {
+         // No filter; page is a view of all KPIs
+         int from = Math.min(start, allKpis.size());
+         int to = Math.min(from + count, allKpis.size());
+         return new KpiPage(allKpis.subList(from, to), start, count, allKpis.size(), null, false);
+      }
+      List<TestCaseResult> kpis = new ArrayList<>(Math.min(count, allKpis.size()));
+      int total = 0;
+      for (TestCaseResult kpi : allKpis) {
+         if (failedOnly && kpi.isOk()) {
+            continue;
+         }
+         if ((lowerFilter != null) && !kpi.getName().toLowerCase(Locale.ENGLISH).contains(lowerFilter)) {
+            continue;
+         }
+         if ((total >= start) && (kpis.size() < count)) {
+            kpis.add(kpi);
+         }
+         total++;
+      }
+      return new KpiPage(kpis, start, count, total, filter, failedOnly);
+   }
+
+   public List<TestCaseResult> getKpis() { return kpis; }
+   public int getStart() { return start; }
+   public int getCount() { return count; }
+   /** @return number of KPIs matching filter */
+   public int getTotal() { return total; }
+   public String getFilter() { return filter; }
+   public boolean isFailedOnly() { return failedOnly; }
+
+   /** @return index of last KPI on page (1 based), for display */
+   public int getEnd() { return start + kpis.size(); }
+   public boolean isFirst() { return start == 0; }
+   public boolean isLast() { return start + count >= total; }
+   public int getPreviousStart() { return Math.max(0, start - count); }
+   public int getNextStart() { return start + count; }
+}
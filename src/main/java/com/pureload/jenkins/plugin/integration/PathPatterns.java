@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Ant style path patterns matched against directory paths, one path segment at a time.
+ * Patterns are separated by comma and segments by '/'. A segment may contain '*' (any
+ * characters) and '?' (one character), and the segment "**" matches any number of segments.
+ * <p>
+ * Matching is incremental; a {@link Match} is advanced for each directory entered, which
+ * makes it possible to decide if a subtree can contain matches (and which children to
+ * look at) without listing it.
+ */
+final class PathPatterns {
+   private static final String ANY_SEGMENTS = "**";
+
+   private final String[][] patterns;
+
+   private PathPatterns(String[][] patterns) {
+      this.patterns = patterns;
+   }
+
+   /**
+    * Parse comma separated patterns.
+    * @param patterns patterns to parse, or null
+    * @param defaultPattern pattern to use if no patterns are given
+    */
+   static PathPatterns parse(String patterns, String defaultPattern) {
+      List<String[]> parsed = new ArrayList<>();
+      if (patterns != null) {
+         for (String pattern : patterns.split(",")) {
+            pattern = StringUtils.strip(pattern.trim().replace('\\', '/'), "/");
+            if (!pattern.isEmpty()) {
+               parsed.add(pattern.split("/+"));
+            }
+         }
+      }
+      if (parsed.isEmpty() && (defaultPattern != null)) {
+         parsed.add(defaultPattern.split("/"));
+      }
+      return new PathPatterns(parsed.toArray(new String[parsed.size()][]));
+   }
+
+   /** @return match state for the root directory (empty path). */
+   Match root() {
+      BitSet[] positions = new BitSet[patterns.length];
+      for (int i = 0; i < patterns.length; i++) {
+         positions[i] = new BitSet();
+         positions[i].set(0);
+         closure(patterns[i], positions[i]);
+      }
+      return new Match(positions);
+   }
+
+   /** Add positions reachable by letting "**" match zero segments. */
+   private static void closure(String[] pattern, BitSet positions) {
+      for (int pos = positions.nextSetBit(0); pos >= 0 && pos < pattern.length; pos = positions.nextSetBit(pos + 1)) {
+         if (ANY_SEGMENTS.equals(pattern[pos])) {
+            positions.set(pos + 1);
+         }
+      }
+   }
+
+   private static boolean isLiteral(String segment) {
+      return (segment.indexOf('*') < 0) && (segment.indexOf('?') < 0);
+   }
+
+   /** Match path segment with wildcards '*' and '?'. */
+   static boolean matchSegment(String segment, String name) {
+      int s = 0;
+      int n = 0;
+      int starS = -1;
+      int starN = 0;
+      while (n < name.length()) {
+         if ((s < segment.length()) && ((segment.charAt(s) == '?') || (segment.charAt(s) == name.charAt(n)))) {
+            s++;
+            n++;
+         }
+         else if ((s < segment.length()) && (segment.charAt(s) == '*')) {
+            starS = s++;
+            starN = n;
+         }
+         else if (starS >= 0) {
+            // Backtrack; let last '*' match one more character
+            s = starS + 1;
+            n = ++starN;
+         }
+         else {
+            return false;
+         }
+      }
+      while ((s < segment.length()) && (segment.charAt(s) == '*')) {
+         s++;
+      }
+      return s == segment.length();
+   }
+
+   /** Immutable match state of a directory path; the positions reached in each pattern. */
+   final class Match {
+      private final BitSet[] positions;
+
+      private Match(BitSet[] positions) {
+         this.positions = positions;
+      }
+
+      /** @return match state of child with given name. */
+      Match child(String name) {
+         BitSet[] next = new BitSet[patterns.length];
+         for (int i = 0; i < patterns.length; i++) {
+            String[] pattern = patterns[i];
+            BitSet current = positions[i];
+            next[i] = new BitSet();
+            for (int pos = current.nextSetBit(0); pos >= 0 && pos < pattern.length; pos = current.nextSetBit(pos + 1)) {
+               if (ANY_SEGMENTS.equals(pattern[pos])) {
+                  next[i].set(pos);
+               }
+               else if (matchSegment(pattern[pos], name)) {
+                  next[i].set(pos + 1);
+               }
+            }
+            closure(pattern, next[i]);
+         }
+         return new Match(next);
+      }
+
+      /** @return true if path is matched by any pattern. */
+      boolean matches() {
+         for (int i = 0; i < patterns.length; i++) {
+            if (positions[i].get(patterns[i].length)) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      /** @return true if a descendant of path may be matched by any pattern. */
+      boolean canMatchDescendant() {
+         for (int i = 0; i < patterns.length; i++) {
+            int pos = positions[i].nextSetBit(0);
+            if ((pos >= 0) && (pos < patterns[i].length)) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      /**
+       * @return names of the only children that may match (or have matching descendants),
+       * or null if children must be listed since patterns contains wildcards at this level.
+       */
+      Set<String> literalChildren() {
+         Set<String> names = new LinkedHashSet<>();
+         for (int i = 0; i < patterns.length; i++) {
+            String[] pattern = patterns[i];
+            BitSet current = positions[i];
+            for (int pos = current.nextSetBit(0); pos >= 0 && pos < pattern.length; pos = current.nextSetBit(pos + 1)) {
+               if (!isLiteral(pattern[pos])) {
+                  return null;
+               }
+               names.add(pattern[pos]);
+            }
+         }
+         return names;
+      }
+   }
+}
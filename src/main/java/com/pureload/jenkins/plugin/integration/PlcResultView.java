@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.LatencyHistogram;
+import com.pureload.jenkins.plugin.result.LatencyTimeSeries;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import hudson.Util;
+import hudson.util.Graph;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Results of one PLC, rendered as page fragments loaded on demand by the results page:
+ * <code>plc/N/kpis</code> (paginated KPI table), <code>plc/N/summary</code> (execution report summary)
+ * and <code>plc/N/latency</code> (response time percentiles per scenario). Response time percentiles
+ * are also available as JSON: <code>plc/N/latencyJson</code>.
+ * <p>
+ * Throughput and response times over the run are served as charts (<code>plc/N/seriesGraph</code>) and
+ * JSON (<code>plc/N/seriesJson</code>), downsampled to a fixed number of points, so the size of a response
+ * does not depend on the length of the run.
+ */
+@SuppressWarnings("WeakerAccess")
+public class PlcResultView {
+   /** Default percentiles of response times. */
+   static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+   /** Default and max number of points of time series. */
+   static final int DEFAULT_POINTS = 200;
+   static final int MAX_POINTS = LatencyTimeSeries.MAX_BUCKETS;
+
+   private static final int GRAPH_WIDTH = 600;
+   private static final int GRAPH_HEIGHT = 250;
+
+   private final PureLoadResultsAction action;
+   private final int index;
+   private final PureLoadResult result;
+
+   PlcResultView(PureLoadResultsAction action, int index, PureLoadResult result) {
+      this.action = action;
+      this.index = index;
+      this.result = result;
+   }
+
+   public PureLoadResultsAction getAction() { return action; }
+   public int getIndex() { return index; }
+   public PureLoadResult getResult() { return result; }
+   public JUnitReport getReport() { return result.getJunitReport(); }
+
+   /**
+    * Page of KPIs.
+    * Request parameters: start, count, filter (text in KPI name) and failed (only failed KPIs).
+    */
+   @SuppressWarnings("unused") // used by kpis.jelly
+   public KpiPage getKpiPage(StaplerRequest req) {
+      return KpiPage.of(getReport().getKpis(), intParameter(req, "start", 0), intParameter(req, "count", 0),
+                        Util.fixEmptyAndTrim(req.getParameter("filter")),
+                        Boolean.parseBoolean(req.getParameter("failed")));
+   }
+
+   /** @return response time histograms by scenario; empty if none */
+   public Map<String, LatencyHistogram> getLatencies() { return result.getLatencies(); }
+
+   @SuppressWarnings("unused") // used by latency.jelly
+   public double[] getPercentiles() { return PERCENTILES.clone(); }
+
+   /** @return value (us) formatted as milliseconds */
+   @SuppressWarnings("unused") // used by latency.jelly
+   public String millis(double micros) {
+      return String.format("%.1f", micros / 1000);
+   }
+
+   /**
+    * Response time percentiles (ms) per scenario as JSON.
+    * Parameter: percentiles (comma separated, e.g. <code>50,99.9</code>).
+    */
+   @SuppressWarnings("unused") // used by stapler
+   public void doLatencyJson(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      double[] percentiles = percentilesParameter(req);
+      rsp.setContentType("application/json;charset=UTF-8");
+      PrintWriter w = rsp.getWriter();
+      w.write("{\"plc\":");
+      Json.writeString(w, getReport().getPlcFileName());
+      w.write(",\"unit\":\"ms\",\"scenarios\":[");
+      boolean first = true;
+      for (Map.Entry<String, LatencyHistogram> entry : getLatencies().entrySet()) {
+         LatencyHistogram histogram = entry.getValue();
+         if (!first) {
+            w.write(',');
+         }
+         first = false;
+         w.write("{\"name\":");
+         Json.writeString(w, entry.getKey());
+         w.write(",\"count\":");
+         w.print(histogram.getTotalCount());
+         w.write(",\"min\":");
+         Json.writeNumber(w, histogram.getMin() / 1000.0);
+         w.write(",\"mean\":");
+         Json.writeNumber(w, histogram.getMean() / 1000.0);
+         w.write(",\"max\":");
+         Json.writeNumber(w, histogram.getMax() / 1000.0);
+         w.write(",\"percentiles\":{");
+         for (int i = 0; i < percentiles.length; i++) {
+            if (i > 0) {
+               w.write(',');
+            }
+            Json.writeString(w, Double.toString(percentiles[i]));
+            w.write(':');
+            Json.writeNumber(w, histogram.getValueAtPercentile(percentiles[i]) / 1000.0);
+         }
+         w.write("}}");
+      }
+      w.write("]}");
+      w.flush();
+   }
+
+   /** @return names of scenarios with time series, in recorded order */
+   @SuppressWarnings("unused") // used by latency.jelly
+   public List<String> getTimeSeriesNames() {
+      return new ArrayList<>(result.getTimeSeries().keySet());
+   }
+
+   /**
+    * Time series per scenario as JSON. For each point: time (ms since start of series), TPS and mean, min and max
+    * response time (ms).
+    * Parameters: points (max number of points per scenario) and scenario (name, for one scenario only).
+    */
+   @SuppressWarnings("unused") // used by stapler
+   public void doSeriesJson(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      int points = pointsParameter(req);
+      String scenario = req.getParameter("scenario");
+      rsp.setContentType("application/json;charset=UTF-8");
+      PrintWriter w = rsp.getWriter();
+      w.write("{\"plc\":");
+      Json.writeString(w, getReport().getPlcFileName());
+      w.write(",\"fields\":[\"time\",\"tps\",\"mean\",\"min\",\"max\"],\"scenarios\":[");
+      boolean first = true;
+      for (Map.Entry<String, LatencyTimeSeries> entry : result.getTimeSeries().entrySet()) {
+         if ((scenario != null) && !scenario.equals(entry.getKey())) {
+            continue;
+         }
+         LatencyTimeSeries series = entry.getValue().downsample(points);
+         if (!first) {
+            w.write(',');
+         }
+         first = false;
+         w.write("{\"name\":");
+         Json.writeString(w, entry.getKey());
+         w.write(",\"start\":");
+         w.print(series.getStart());
+         w.write(",\"interval\":");
+         w.print(series.getInterval());
+         w.write(",\"points\":[");
+         for (int i = 0; i < series.size(); i++) {
+            if (i > 0) {
+               w.write(',');
+            }
+            w.write('[');
+            w.print(i * series.getInterval());
+            w.write(',');
+            Json.writeNumber(w, series.getTps(i));
+            w.write(',');
+            Json.writeNumber(w, series.getMean(i) / 1000);
+            w.write(',');
+            writeMillis(w, series, series.getMin(i), i);
+            w.write(',');
+            writeMillis(w, series, series.getMax(i), i);
+            w.write(']');
+         }
+         w.write("]}");
+      }
+      w.write("]}");
+      w.flush();
+   }
+
+   private static void writeMillis(PrintWriter w, LatencyTimeSeries series, long micros, int i) {
+      Json.writeNumber(w, (series.getCount(i) > 0) ? micros / 1000.0 : Double.NaN);
+   }
+
+   /**
+    * Chart (PNG) of TPS or response times (mean and max) of one scenario over the run.
+    * Parameters: scenario (index of scenario), type (<code>tps</code> or <code>latency</code>) and points.
+    */
+   @SuppressWarnings("unused") // used by stapler
+   public void doSeriesGraph(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      List<String> names = getTimeSeriesNames();
+      int scenario = intParameter(req, "scenario", -1);
+      if ((scenario < 0) || (scenario >= names.size())) {
+         rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+         return;
+      }
+      final String name = names.get(scenario);
+      final LatencyTimeSeries series = result.getTimeSeries().get(name).downsample(pointsParameter(req));
+      final boolean tps = !"latency".equals(req.getParameter("type"));
+      new Graph(action.getLastModified(), GRAPH_WIDTH, GRAPH_HEIGHT) {
+         @Override
+         protected JFreeChart createGraph() {
+            return createChart(name, series, tps);
+         }
+      }.doPng(req, rsp);
+   }
+
+   private static JFreeChart createChart(String name, LatencyTimeSeries series, boolean tps) {
+      XYSeriesCollection dataset = new XYSeriesCollection();
+      if (tps) {
+         XYSeries tpsSeries = new XYSeries("TPS");
+         for (int i = 0; i < series.size(); i++) {
+            tpsSeries.add(i * series.getInterval() / 1000.0, series.getTps(i));
+         }
+         dataset.addSeries(tpsSeries);
+      }
+      else {
+         XYSeries meanSeries = new XYSeries("Mean");
+         XYSeries maxSeries = new XYSeries("Max");
+         for (int i = 0; i < series.size(); i++) {
+            if (series.getCount(i) > 0) {
+               double time = i * series.getInterval() / 1000.0;
+               meanSeries.add(time, series.getMean(i) / 1000);
+               maxSeries.add(time, series.getMax(i) / 1000.0);
+            }
+         }
+         dataset.addSeries(meanSeries);
+         dataset.addSeries(maxSeries);
+      }
+      JFreeChart chart = ChartFactory.createXYLineChart(name, "Time (s)", tps ? "TPS" : "Response time (ms)",
+                                                        dataset, PlotOrientation.VERTICAL, !tps, true, false);
+      chart.setBackgroundPaint(Color.WHITE);
+      XYPlot plot = chart.getXYPlot();
+      plot.setBackgroundPaint(Color.WHITE);
+      plot.setRangeGridlinePaint(Color.LIGHT_GRAY);
+      return chart;
+   }
+
+   private static int pointsParameter(StaplerRequest req) {
+      int points = intParameter(req, "points", DEFAULT_POINTS);
+      return (points > 0) ? Math.min(points, MAX_POINTS) : DEFAULT_POINTS;
+   }
+
+   private static double[] percentilesParameter(StaplerRequest req) {
+      String value = Util.fixEmptyAndTrim(req.getParameter("percentiles"));
+      if (value == null) {
+         return PERCENTILES.clone();
+      }
+      String[] parts = value.split(",");
+      double[] percentiles = new double[parts.length];
+      for (int i = 0; i < parts.length; i++) {
+         try {
+            percentiles[i] = Math.min(Math.max(Double.parseDouble(parts[i].trim()), 0), 100);
+         }
+         catch (NumberFormatException e) {
+            return PERCENTILES.clone();
+         }
+      }
+      return percentiles;
+   }
+
+   private static int intParameter(StaplerRequest req, String name, int defaultValue) {
+      String value = req.getParameter(name);
+      if (value == null) {
+         return defaultValue;
+      }
+      try {
+         return Integer.parseInt(value.trim());
+      }
+      catch (NumberFormatException e) {
+         return defaultValue;
+      }
+   }
+}
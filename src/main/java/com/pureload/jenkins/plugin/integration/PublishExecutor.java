@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of worker threads publishing results in the background.
+ * The number of threads and the number of queued publish tasks are limited. When the queue is full, tasks are
+ * rejected and the caller publishes in the build instead, which gives backpressure on builds when the
+ * controller can not keep up.
+ */
+final class PublishExecutor {
+   /** Number of worker threads. */
+   static final int THREADS = Math.max(1, Integer.getInteger(PublishExecutor.class.getName() + ".threads", 2));
+   /** Max number of tasks waiting for a worker thread. */
+   static final int QUEUE_SIZE = Math.max(1, Integer.getInteger(PublishExecutor.class.getName() + ".queueSize", 10));
+
+   private static final PublishExecutor INSTANCE = new PublishExecutor(THREADS, QUEUE_SIZE);
+
+   private final int threads;
+   private final int queueSize;
+   private final ThreadPoolExecutor executor;
+
+   PublishExecutor(int threads, int queueSize) {
+      this.threads = threads;
+      this.queueSize = queueSize;
+      this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                             new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+         private final AtomicInteger count = new AtomicInteger();
+
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "PureLoad publisher " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      executor.allowCoreThreadTimeOut(true);
+   }
+
+   static PublishExecutor getInstance() {
+      return INSTANCE;
+   }
+
+   /** @return future of task, or null if the queue is full (task not submitted) */
+   <T> Future<T> submit(Callable<T> task) {
+      try {
+         return executor.submit(task);
+      }
+      catch (RejectedExecutionException e) {
+         return null;
+      }
+   }
+
+   /** @return number of tasks waiting for a worker thread */
+   int getQueued() { return executor.getQueue().size(); }
+   /** @return number of tasks being run */
+   int getActive() { return executor.getActiveCount(); }
+   int getThreads() { return threads; }
+   int getQueueSize() { return queueSize; }
+}
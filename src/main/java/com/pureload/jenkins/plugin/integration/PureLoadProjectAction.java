@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.servlet.http.HttpServletResponse;
+
+import com.pureload.jenkins.plugin.trend.KpiSeries;
+import com.pureload.jenkins.plugin.trend.KpiTrendIndex;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.util.Graph;
+import jenkins.model.TransientActionFactory;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Project action showing KPI trends over the last builds.
+ * Data is taken from the {@link KpiTrendIndex} of the job, so no builds are loaded.
+ */
+@SuppressWarnings("WeakerAccess")
+public class PureLoadProjectAction implements Action {
+   /** Default number of builds shown. */
+   static final int DEFAULT_BUILDS = 30;
+
+   private static final int GRAPH_WIDTH = 500;
+   private static final int GRAPH_HEIGHT = 200;
+
+   private final Job<?, ?> job;
+
+   PureLoadProjectAction(Job<?, ?> job) {
+      this.job = job;
+   }
+
+   public Job<?, ?> getJob() {
+      return job;
+   }
+
+   @SuppressWarnings("unused") // used by index.jelly
+   public List<KpiSeries> getSeries() {
+      return KpiTrendIndex.forJob(job).getSeries(DEFAULT_BUILDS);
+   }
+
+   /**
+    * Trend graph (PNG) of one KPI.
+    * Parameters: series (index of KPI series) and builds (number of builds).
+    */
+   @SuppressWarnings("unused") // used by stapler
+   public void doGraph(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      KpiTrendIndex index = KpiTrendIndex.forJob(job);
+      final KpiSeries series = index.getSeries(intParameter(req, "series", -1), buildsParameter(req));
+      if (series == null) {
+         rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+         return;
+      }
+      new Graph(index.getLastModified(), GRAPH_WIDTH, GRAPH_HEIGHT) {
+         @Override
+         protected JFreeChart createGraph() {
+            return createChart(series);
+         }
+      }.doPng(req, rsp);
+   }
+
+   /**
+    * KPI trends as JSON.
+    * Parameter: builds (number of builds).
+    */
+   @SuppressWarnings("unused") // used by stapler
+   public void doJson(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      List<KpiSeries> seriesList = KpiTrendIndex.forJob(job).getSeries(buildsParameter(req));
+      rsp.setContentType("application/json;charset=UTF-8");
+      PrintWriter w = rsp.getWriter();
+      w.write("{\"kpis\":[");
+      for (int i = 0; i < seriesList.size(); i++) {
+         KpiSeries series = seriesList.get(i);
+         if (i > 0) {
+            w.write(',');
+         }
+         w.write("{\"plc\":");
+         Json.writeString(w, series.getPlcName());
+         w.write(",\"name\":");
+         Json.writeString(w, series.getKpiName());
+         w.write(",\"builds\":[");
+         for (int j = 0; j < series.size(); j++) {
+            if (j > 0) {
+               w.write(',');
+            }
+            w.write("{\"build\":");
+            w.print(series.getBuild(j));
+            w.write(",\"value\":");
+            Json.writeNumber(w, series.getValue(j));
+            w.write(",\"ok\":");
+            w.print(series.isOk(j));
+            w.write('}');
+         }
+         w.write("]}");
+      }
+      w.write("]}");
+      w.flush();
+   }
+
+   private static JFreeChart createChart(KpiSeries series) {
+      DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+      for (int i = 0; i < series.size(); i++) {
+         double value = series.getValue(i);
+         dataset.addValue(Double.isNaN(value) ? null : value, series.getKpiName(), "#" + series.getBuild(i));
+      }
+      JFreeChart chart = ChartFactory.createLineChart(series.getKpiName(), "Build", "Value", dataset,
+                                                      PlotOrientation.VERTICAL, false, true, false);
+      chart.setBackgroundPaint(Color.WHITE);
+      CategoryPlot plot = chart.getCategoryPlot();
+      plot.setBackgroundPaint(Color.WHITE);
+      plot.setRangeGridlinePaint(Color.LIGHT_GRAY);
+      return chart;
+   }
+
+   private static int buildsParameter(StaplerRequest req) {
+      int builds = intParameter(req, "builds", DEFAULT_BUILDS);
+      return (builds > 0) ? Math.min(builds, KpiTrendIndex.MAX_BUILDS) : DEFAULT_BUILDS;
+   }
+
+   private static int intParameter(StaplerRequest req, String name, int defaultValue) {
+      String value = req.getParameter(name);
+      if (value == null) {
+         return defaultValue;
+      }
+      try {
+         return Integer.parseInt(value.trim());
+      }
+      catch (NumberFormatException e) {
+         return defaultValue;
+      }
+   }
+
+   @Override
+   public String getIconFileName() { return "/plugin/pureload/images/check.png"; }
+   @Override
+   public String getDisplayName() { return "PureLoad Trend"; }
+   @Override
+   public String getUrlName() { return "pureload-trend"; }
+
+   /** Adds trend action to jobs where PureLoad results has been published. */
+   @SuppressWarnings("unused") // used by framework
+   @Extension
+   public static class Factory extends TransientActionFactory<Job> {
+
+      @Override
+      public Class<Job> type() {
+         return Job.class;
+      }
+
+      @Nonnull
+      @Override
+      public Collection<? extends Action> createFor(@Nonnull Job target) {
+         if (!KpiTrendIndex.exists(target)) {
+            return Collections.emptyList();
+         }
+         return Collections.singletonList(new PureLoadProjectAction(target));
+      }
+   }
+}
@@ -4,53 +4,112 @@
 
 package com.pureload.jenkins.plugin.integration;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 
-import com.pureload.jenkins.plugin.parser.JUnitParser;
-import com.pureload.jenkins.plugin.parser.ParseException;
-import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.metrics.PublishMetrics;
+import com.pureload.jenkins.plugin.metrics.PublishMetricsListener;
+import com.pureload.jenkins.plugin.metrics.PublishStatistics;
+import com.pureload.jenkins.plugin.parser.LatencyCsvParser;
+import com.pureload.jenkins.plugin.policy.KpiHistory;
+import com.pureload.jenkins.plugin.policy.KpiPolicy;
+import com.pureload.jenkins.plugin.policy.KpiRule;
 import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.trend.KpiTrendIndex;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
-import jenkins.model.ArtifactManager;
+import hudson.util.FormValidation;
+import hudson.util.StreamTaskListener;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
 import jenkins.util.VirtualFile;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
 /**
  * PureLoad publisher.
  * This build step tries to find JUnit result file in artifacts, parse the JUnt results file
  * and publish results (execute PureLoadResultsAction).
+ * Optionally the results are parsed in the workspace on the build agent, so only the parsed results
+ * are transferred to the controller.
+ * <p>
+ * The publisher may be run repeatedly in a build (e.g. from a pipeline during a long running test).
+ * Result directories already parsed and unchanged (same size and modification time) are skipped, and
+ * new or changed results are updated in the results action of the build. Publishes of the same build
+ * (e.g. from parallel branches) are run one at a time.
+ * <p>
+ * In fail fast mode, parsing stops at the first failed KPI, and the results parsed so far are published.
+ * <p>
+ * Results of the same PLC in several result directories (shards from distributed workers or parallel
+ * branches) may be merged into one result. All result directories are then parsed again on each publish,
+ * and replace the results published earlier in the build.
+ * <p>
+ * KPI rules (see {@link KpiRule}) are evaluated over the KPI values, and relative to earlier builds using
+ * the KPI trend index. The build fails if a rule is not passed.
+ * <p>
+ * Optionally, response times are read from a CSV file in each result directory (see {@link LatencyCsvParser})
+ * into latency histograms per scenario, stored with the results.
+ * <p>
+ * Time of each phase (scan, parse, summary extraction and persisting), bytes read and testcases parsed
+ * are summarized in the build log, and passed to any {@link PublishMetricsListener}.
+ * <p>
+ * Optionally, results are published in the background by a bounded pool of workers (see
+ * {@link PublishExecutor}). The results action is added at once, showing that results are processing, and the
+ * step finishes without waiting, so the build does not hold its executor while results are parsed. The build
+ * result is then not changed by the results; the KPI gate result is only shown by the results action. If the
+ * gate is blocking, the step waits for the results (holding the executor), and the gate result is applied to the
+ * build; the workers then only limit the number of results parsed at the same time. If the queue of the workers
+ * is full, results are published in the build.
  */
 @SuppressWarnings("unused") // used by framework
 public class PureLoadPublisher extends Recorder implements SimpleBuildStep {
 
-   private static final String JUNIT_REPORT_DIR = "junit";
-   private static final String JUNIT_REPORT_FILENAME = "junit-report.xml";
-   private static final String EXECUTION_REPORT_DIR = "report";
-   private static final String EXECUTION_REPORT_FILENAME = "report.html";
    private static final Logger LOGGER = Logger.getLogger(PureLoadPublisher.class.getName());
 
+   private String includes;   // Patterns of result directories to include (null for all)
+   private String excludes;   // Patterns of directories to exclude (null for none)
+   private int maxDepth;      // Max depth of result directories (0 for no limit)
+   private boolean parseOnAgent; // Parse results in workspace on agent?
+   private boolean failFast;  // Stop parsing at first failed KPI?
+   private boolean mergeShards; // Merge results of same PLC into one?
+   private String rules;      // KPI rules, one per line (null for none)
+   private String latencyFile; // Path of response times CSV file in result directory (null for none)
+   private String latencyColumns; // Name and time column of CSV file (null for default)
+   private boolean publishInBackground; // Parse and publish results on background workers?
+   private boolean blockingGate; // Wait for results published in background, to apply gate result?
+   private transient volatile KpiPolicy policy; // Compiled rules
+
    /**
     * The annotation @DataBoundConstructor are required for jenkins 1.393 even
     * if no params are passed in.
@@ -60,102 +119,345 @@ public class PureLoadPublisher extends Recorder implements SimpleBuildStep {
       debug("Creating PureLoadPublisher");
    }
 
+   public String getIncludes() { return includes; }
+   @DataBoundSetter
+   public void setIncludes(String includes) { this.includes = Util.fixEmptyAndTrim(includes); }
+
+   public String getExcludes() { return excludes; }
+   @DataBoundSetter
+   public void setExcludes(String excludes) { this.excludes = Util.fixEmptyAndTrim(excludes); }
+
+   public int getMaxDepth() { return maxDepth; }
+   @DataBoundSetter
+   public void setMaxDepth(int maxDepth) { this.maxDepth = Math.max(0, maxDepth); }
+
+   public boolean isParseOnAgent() { return parseOnAgent; }
+   @DataBoundSetter
+   public void setParseOnAgent(boolean parseOnAgent) { this.parseOnAgent = parseOnAgent; }
+
+   public boolean isFailFast() { return failFast; }
+   @DataBoundSetter
+   public void setFailFast(boolean failFast) { this.failFast = failFast; }
+
+   public boolean isMergeShards() { return mergeShards; }
+   @DataBoundSetter
+   public void setMergeShards(boolean mergeShards) { this.mergeShards = mergeShards; }
+
+   public String getRules() { return rules; }
+   @DataBoundSetter
+   public void setRules(String rules) {
+      this.rules = Util.fixEmptyAndTrim(rules);
+      this.policy = null;
+   }
+
+   public String getLatencyFile() { return latencyFile; }
+   @DataBoundSetter
+   public void setLatencyFile(String latencyFile) { this.latencyFile = Util.fixEmptyAndTrim(latencyFile); }
+
+   public String getLatencyColumns() { return latencyColumns; }
+   @DataBoundSetter
+   public void setLatencyColumns(String latencyColumns) { this.latencyColumns = Util.fixEmptyAndTrim(latencyColumns); }
+
+   public boolean isPublishInBackground() { return publishInBackground; }
+   @DataBoundSetter
+   public void setPublishInBackground(boolean publishInBackground) { this.publishInBackground = publishInBackground; }
+
+   public boolean isBlockingGate() { return blockingGate; }
+   @DataBoundSetter
+   public void setBlockingGate(boolean blockingGate) { this.blockingGate = blockingGate; }
+
+   /**
+    * @return parser of response times, or null if not configured
+    * @throws IllegalArgumentException if columns are not valid
+    */
+   private LatencyCsvParser getLatencyParser() {
+      return (latencyFile != null) ? LatencyCsvParser.of(latencyFile, latencyColumns) : null;
+   }
+
+   /**
+    * @return compiled rules
+    * @throws IllegalArgumentException if rules are not valid
+    */
+   private KpiPolicy getPolicy() {
+      KpiPolicy p = policy;
+      if (p == null) {
+         p = KpiPolicy.parse(rules);
+         policy = p;
+      }
+      return p;
+   }
+
    @Override
    public void perform(@Nonnull Run<?, ?> run, @Nonnull FilePath filePath, @Nonnull Launcher launcher,
                        @Nonnull TaskListener listener)
-       throws IOException
+       throws InterruptedException, IOException
    {
-      List<PureLoadResult> pureloadResults = findAndParseResults(run, listener);
-
-      if (!pureloadResults.isEmpty()) {
-         listener.getLogger().println("Parsed JUnit report. Adding PureLoad Results action.");
-         debug("Creating results action...");
-         PureLoadResultsAction action = new PureLoadResultsAction(run);
-         action.setPureLoadResults(pureloadResults);
-
-         debug("Adding results action...");
-         run.addAction(action);
-         for (PureLoadResult pureloadResult : pureloadResults) {
-            if (!pureloadResult.getJunitReport().isSuccess()) {
-               listener.getLogger().println("JUnit report indicated failure");
-               run.setResult(Result.FAILURE);
-            }
-         }
+      PureLoadResultsAction action = PureLoadResultsAction.getOrCreate(run);
+      if (!publishInBackground) {
+         applyResult(run, publish(run, action, filePath, listener));
+         return;
+      }
+
+      if (parseOnAgent && !blockingGate) {
+         // Workspace may be used by other builds when the step is done
+         listener.getLogger().println("Parsing PureLoad results from artifacts in background.");
       }
+      action.startProcessing();
+      run.save(); // Keep pending publish, shown as incomplete if lost by a restart
+      Callable<Result> task = blockingGate ? new PublishTask(run, filePath, action, listener) :
+                              new PublishTask(run, null, action, null);
+      applyResult(run, publishInBackground(PublishExecutor.getInstance(), task,
+                                           new PublishTask(run, filePath, action, listener), blockingGate,
+                                           listener.getLogger()));
    }
 
-   private List<PureLoadResult> findAndParseResults(Run<?, ?> run, TaskListener listener)
-       throws IOException
+   /**
+    * Submit publish task to background workers.
+    * @param task task to submit
+    * @param inBuild task to call in build if the queue of the workers is full
+    * @param blocking wait for task, to apply its result?
+    * @return result to apply to build; success if not blocking
+    */
+   static Result publishInBackground(PublishExecutor executor, Callable<Result> task, Callable<Result> inBuild,
+                                     boolean blocking, PrintStream logger)
+       throws InterruptedException, IOException
    {
-      List<PureLoadResult> pureloadResults = new ArrayList<>();
-      ArtifactManager artifactManager = run.getArtifactManager();
-
-      doFindAndParseResults(pureloadResults, artifactManager.root(), run, listener);
+      Future<Result> future = executor.submit(task);
+      if (future == null) {
+         logger.println("Too many PureLoad results queued. Publishing results in build.");
+         return call(inBuild);
+      }
+      if (!blocking) {
+         logger.println("Publishing PureLoad results in background. The build result is not changed by the results.");
+         return Result.SUCCESS;
+      }
+      logger.println("Publishing PureLoad results in background. Waiting for KPI gate.");
+      try {
+         return future.get();
+      }
+      catch (ExecutionException e) {
+         throw rethrow(e.getCause());
+      }
+   }
 
-      if (pureloadResults.isEmpty()) {
-         listener.error("Can not locate JUnit report file");
-         run.setResult(Result.FAILURE);
+   private static Result call(Callable<Result> task) throws InterruptedException, IOException {
+      try {
+         return task.call();
+      }
+      catch (InterruptedException | IOException | RuntimeException e) {
+         throw e;
       }
+      catch (Exception e) {
+         throw rethrow(e);
+      }
+   }
 
-      // Sort results based on execution date.
-      Collections.sort(pureloadResults, PureLoadResult.BY_NAME_DATE);
+   private static IOException rethrow(Throwable cause) throws InterruptedException, IOException {
+      if (cause instanceof InterruptedException) {
+         throw (InterruptedException) cause;
+      }
+      if (cause instanceof IOException) {
+         throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+         throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+         throw (Error) cause;
+      }
+      return new IOException(cause);
+   }
 
-      return pureloadResults;
+   private static void applyResult(Run<?, ?> run, Result result) {
+      if (result.isWorseThan(Result.SUCCESS)) {
+         run.setResult(result);
+      }
    }
 
-   private void doFindAndParseResults(List<PureLoadResult> pureloadResults, VirtualFile file,
-                                      Run<?, ?> run, TaskListener listener)
-       throws IOException
+   /**
+    * Find, parse and publish results. Publishes of a build are run one at a time (holding the publish lock of
+    * the action), so result directories parsed by one publish are skipped by the next.
+    * @return result of KPI gate (failure if results are missing or invalid, or KPIs not passed)
+    */
+   private Result publish(Run<?, ?> run, PureLoadResultsAction action, FilePath workspace, TaskListener listener)
+       throws InterruptedException, IOException
    {
-      try {
-         if (isResultDir(file)) {
-            pureloadResults.add(parseResult(file, run, listener));
+      synchronized (action.getPublishLock()) {
+         Gate gate = new Gate();
+         PublishMetrics metrics = new PublishMetrics();
+         Map<String, ResultDirState> previous = action.getParsedDirs();
+         Map<String, ResultDirState> parsedDirs = !mergeShards ? previous : null;
+         List<ResultDirScanner.Outcome> parsed = findAndParseResults(run, workspace, parsedDirs, gate, metrics,
+                                                                     listener);
+         if (mergeShards && !parsed.isEmpty()) {
+            int shards = parsed.size();
+            parsed = ShardMerger.merge(parsed);
+            if (parsed.size() < shards) {
+               listener.getLogger().println("Merged " + shards + " result directories into " + parsed.size() +
+                                            " result(s).");
+            }
          }
-         else if (file.isDirectory()) {
-            for (VirtualFile f : file.list()) {
-               // Recurse into children.
-               doFindAndParseResults(pureloadResults, f, run, listener);
+
+         if (!parsed.isEmpty()) {
+            if (previous == null) {
+               listener.getLogger().println("Parsed JUnit report. Adding results to PureLoad Results action.");
+            }
+            else {
+               listener.getLogger().println("Parsed " + parsed.size() + " new or changed JUnit report(s). " +
+                                            "Updating PureLoad Results action.");
             }
+            long start = PublishMetrics.start();
+            List<PureLoadResult> pureloadResults = action.updateResults(parsed, mergeShards);
+            run.save(); // Keep state of parsed result directories if build is resumed
+            metrics.stop(PublishMetrics.Phase.PERSIST, start);
+            for (PureLoadResult pureloadResult : pureloadResults) {
+               if (!pureloadResult.getJunitReport().isSuccess()) {
+                  listener.getLogger().println("JUnit report indicated failure");
+                  gate.fail();
+               }
+            }
+            evaluateRules(run, pureloadResults, gate, listener);
+            start = PublishMetrics.start();
+            updateTrend(run, pureloadResults, listener);
+            metrics.stop(PublishMetrics.Phase.PERSIST, start);
          }
-         // else do nothing
+         listener.getLogger().println(metrics);
+         PublishMetricsListener.fireOnPublished(run, metrics);
+         return gate.getResult();
+      }
+   }
+
+   private void evaluateRules(final Run<?, ?> run, List<PureLoadResult> pureloadResults, Gate gate,
+                              TaskListener listener)
+   {
+      if (rules == null) {
+         return;
+      }
+      KpiPolicy kpiPolicy;
+      try {
+         kpiPolicy = getPolicy();
+      }
+      catch (IllegalArgumentException e) {
+         listener.error("Invalid KPI rules: " + e.getMessage());
+         gate.fail();
+         return;
+      }
+      final KpiTrendIndex index = KpiTrendIndex.forJob(run.getParent());
+      List<KpiPolicy.Violation> violations = kpiPolicy.evaluate(pureloadResults, new KpiHistory() {
+         @Override
+         public double[] getValues(String plcName, String kpiName, int count) {
+            return index.getValues(plcName, kpiName, run.getNumber(), count);
+         }
+      });
+      for (KpiPolicy.Violation violation : violations) {
+         listener.getLogger().println(violation);
+      }
+      if (!violations.isEmpty()) {
+         listener.getLogger().println("KPI rules not passed");
+         gate.fail();
+      }
+   }
+
+   private void updateTrend(Run<?, ?> run, List<PureLoadResult> pureloadResults, TaskListener listener) {
+      try {
+         KpiTrendIndex.forJob(run.getParent()).update(run.getNumber(), pureloadResults);
       }
-      catch (ParseException e) {
-         listener.error(e.getMessage());
-         run.setResult(Result.FAILURE);
+      catch (IOException e) {
+         LOGGER.log(Level.WARNING, "Can not update KPI trend", e);
+         listener.getLogger().println("Can not update KPI trend: " + e);
       }
    }
 
-   private PureLoadResult parseResult(VirtualFile resultDir, Run<?, ?> run, TaskListener listener)
-       throws IOException, ParseException
+   /**
+    * Find and parse new or changed results.
+    * @param parsedDirs state of result directories already parsed, or null if none
+    * @return parsed outcomes (not failed or unchanged), in traversal order
+    */
+   private List<ResultDirScanner.Outcome> findAndParseResults(Run<?, ?> run, FilePath workspace,
+                                                              Map<String, ResultDirState> parsedDirs, Gate gate,
+                                                              PublishMetrics metrics, TaskListener listener)
+       throws InterruptedException, IOException
    {
-      VirtualFile junitFile = resultDir.child(JUNIT_REPORT_DIR).child(JUNIT_REPORT_FILENAME);
+      List<ResultDirScanner.Outcome> parsed = new ArrayList<>();
+      LatencyCsvParser latencyParser = null;
+      try {
+         latencyParser = getLatencyParser();
+      }
+      catch (IllegalArgumentException e) {
+         listener.error("Invalid response time columns: " + e.getMessage());
+         gate.fail();
+      }
 
-      debug("Parsing JUnit report... ");
-      JUnitReport junitReport = JUnitParser.parse(junitFile);
-      debug("Parsed JUnit report: {0}", junitReport);
+      List<ResultDirScanner.Outcome> outcomes = null;
+      if (parseOnAgent) {
+         outcomes = parseInWorkspace(workspace, parsedDirs, latencyParser, metrics, listener);
+      }
+      if ((outcomes == null) || outcomes.isEmpty()) {
+         ResultDirScanner.ResultParser parser =
+             ResultCache.getInstance().parser(new ResultDirParser(failFast, latencyParser, metrics));
+         ResultDirScanner scanner = new ResultDirScanner(parser, includes, excludes, maxDepth, parsedDirs)
+             .failFast(failFast);
+         long start = PublishMetrics.start();
+         outcomes = scanner.scan(run.getArtifactManager().root());
+         metrics.stop(PublishMetrics.Phase.SCAN, start);
+      }
+      int unchanged = 0;
+      for (ResultDirScanner.Outcome outcome : outcomes) {
+         if (outcome.getError() != null) {
+            listener.error(outcome.getError().getMessage());
+            gate.fail();
+         }
+         else if (outcome.isUnchanged()) {
+            unchanged++;
+         }
+         else {
+            parsed.add(outcome);
+            if (outcome.getResult().getJunitReport().isTruncated()) {
+               listener.getLogger().println("KPI failed in " + outcome.getPath() + ". Stopped parsing (fail fast).");
+            }
+         }
+      }
 
-      PureLoadResult pureloadResult = new PureLoadResult(junitReport);
-      addTotalSummary(pureloadResult, resultDir.child(EXECUTION_REPORT_DIR).child(EXECUTION_REPORT_FILENAME));
+      if (parsed.isEmpty()) {
+         if (parsedDirs == null) {
+            listener.error("Can not locate JUnit report file");
+            gate.fail();
+         }
+         else {
+            listener.getLogger().println("No new PureLoad results (" + unchanged + " unchanged).");
+         }
+      }
 
-      return pureloadResult;
+      return parsed;
    }
 
-   private static boolean isResultDir(VirtualFile dir) throws IOException {
-      if (!dir.exists() || !dir.isDirectory() || !dir.canRead()) {
-         return false;
+   /**
+    * Parse results in workspace on the agent.
+    * @return outcomes, or null if there is no workspace to parse
+    */
+   private List<ResultDirScanner.Outcome> parseInWorkspace(FilePath workspace, Map<String, ResultDirState> parsedDirs,
+                                                           LatencyCsvParser latencyParser, PublishMetrics metrics,
+                                                           TaskListener listener)
+       throws InterruptedException, IOException
+   {
+      if ((workspace == null) || !workspace.exists()) {
+         listener.getLogger().println("No workspace available. Parsing PureLoad results from artifacts.");
+         return null;
       }
-
-      VirtualFile junitDir = dir.child(JUNIT_REPORT_DIR);
-      if (!junitDir.exists() || !junitDir.isDirectory() || !junitDir.canRead()) {
-         return false;
+      AgentResults results = workspace.act(new ParseResultsCallable(includes, excludes, maxDepth, failFast, latencyParser,
+                                                                    parsedDirs));
+      metrics.add(results.metrics);
+      List<ResultDirScanner.Outcome> outcomes = results.outcomes;
+      if (outcomes.isEmpty()) {
+         listener.getLogger().println("No PureLoad results found in workspace. Parsing PureLoad results from artifacts.");
       }
-
-      VirtualFile junitReportFile = junitDir.child(JUNIT_REPORT_FILENAME);
-      return junitReportFile.exists() && junitReportFile.canRead();
+      return outcomes;
    }
 
    private static void debug(String msg, Object... args) {
-      LOGGER.fine(MessageFormat.format(msg, args));
+      if (LOGGER.isLoggable(Level.FINE)) {
+         LOGGER.fine(MessageFormat.format(msg, args));
+      }
    }
 
    @Override
@@ -163,61 +465,124 @@ public class PureLoadPublisher extends Recorder implements SimpleBuildStep {
       return BuildStepMonitor.NONE;
    }
 
-   private void addTotalSummary(PureLoadResult pureloadResult, VirtualFile reportFile) throws IOException {
-      if (reportFile.isFile() && reportFile.canRead()) {
-         try (InputStream is = reportFile.open()) {
-            doAddTotalSummary(pureloadResult, is);
-         }
-      }
+   /** Result of KPI gate of a publish. */
+   private static final class Gate {
+      private Result result = Result.SUCCESS;
+
+      void fail() { result = Result.FAILURE; }
+      Result getResult() { return result; }
    }
 
-   private void doAddTotalSummary(PureLoadResult pureloadResult, InputStream is) throws IOException {
-      BufferedReader rdr = new BufferedReader(new InputStreamReader(is, Charset.defaultCharset()));
-      // Find start of total summary
-      String line = findStartTag(rdr, "<h3>Total</h3>");
-      if (line == null) {
-         debug("Total summary not found in execution report");
-         return;
-      }
-      // Skip "<p>"
-      rdr.readLine();
-      pureloadResult.setTotalSummaryHtml(readUpTo(rdr, "</table>", true));
-      // Find start of summary table
-      line = findStartTag(rdr, "<table");
-      if (line == null) {
-         debug("Total summary table not found in execution report");
-         return;
+   /**
+    * Publish results on a worker thread. Publishes of a build are run one at a time.
+    * Without a listener (not blocking the build), the publish is logged to the publish log of the results
+    * action, and the gate result is kept by the action.
+    */
+   private final class PublishTask implements Callable<Result> {
+      private final Run<?, ?> run;
+      private final FilePath workspace;
+      private final PureLoadResultsAction action;
+      private final TaskListener listener;
+
+      PublishTask(Run<?, ?> run, FilePath workspace, PureLoadResultsAction action, TaskListener listener) {
+         this.run = run;
+         this.workspace = workspace;
+         this.action = action;
+         this.listener = listener;
       }
-      pureloadResult.setTotalSummaryTableHtml(line + readUpTo(rdr, "</table>", true));
-   }
 
-   private String findStartTag(BufferedReader rdr, String tag) throws IOException {
-      String line = rdr.readLine();
-      while (line != null) {
-         if (line.contains(tag)) {
-            return line;
+      @Override
+      public Result call() throws InterruptedException, IOException {
+         Result result = null;
+         try {
+            synchronized (action.getPublishLock()) {
+               if (listener != null) {
+                  result = publish(run, action, workspace, listener);
+               }
+               else {
+                  result = publishToLog();
+               }
+            }
+            return result;
+         }
+         finally {
+            action.finishProcessing((listener == null) ? result : null);
+            try {
+               run.save();
+            }
+            catch (IOException e) {
+               LOGGER.log(Level.WARNING, "Can not save PureLoad results state of " + run, e);
+            }
          }
-         line = rdr.readLine();
       }
-      return null;
-   }
 
-   @SuppressWarnings("SameParameterValue")
-   private String readUpTo(BufferedReader rdr, String endTag, boolean includeEndLine) throws IOException {
-      StringBuilder sb = new StringBuilder();
-      String line = rdr.readLine();
-      while (line != null) {
-         if (line.contains(endTag)) {
-            // We have found the end; done
-            if (includeEndLine) {
-               sb.append(line).append('\n');
+      private Result publishToLog() throws IOException {
+         try (StreamTaskListener log = new StreamTaskListener(action.getPublishLogFile(), true,
+                                                              StandardCharsets.UTF_8))
+         {
+            try {
+               return publish(run, action, workspace, log);
+            }
+            catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               log.error("Publishing PureLoad results interrupted");
+               return Result.ABORTED;
+            }
+            catch (IOException | RuntimeException e) {
+               LOGGER.log(Level.WARNING, "Can not publish PureLoad results of " + run, e);
+               log.error("Can not publish PureLoad results: " + e);
+               return Result.FAILURE;
             }
-            return sb.toString();
          }
-         sb.append(line).append('\n');
-         line = rdr.readLine();
       }
-      return null;
+   }
+
+   /** Outcomes and metrics of parsing on the agent. */
+   private static final class AgentResults implements Serializable {
+      private static final long serialVersionUID = 1L;
+
+      private final List<ResultDirScanner.Outcome> outcomes;
+      private final PublishMetrics metrics;
+
+      AgentResults(List<ResultDirScanner.Outcome> outcomes, PublishMetrics metrics) {
+         this.outcomes = outcomes;
+         this.metrics = metrics;
+      }
+   }
+
+   /** Find and parse results on the agent, returning only the parsed results. */
+   private static final class ParseResultsCallable extends MasterToSlaveFileCallable<AgentResults> {
+      private static final long serialVersionUID = 1L;
+
+      private final String includes;
+      private final String excludes;
+      private final int maxDepth;
+      private final boolean failFast;
+      private final LatencyCsvParser latencyParser;
+      private final HashMap<String, ResultDirState> parsedDirs;
+
+      ParseResultsCallable(String includes, String excludes, int maxDepth, boolean failFast,
+                           LatencyCsvParser latencyParser, Map<String, ResultDirState> parsedDirs)
+      {
+         this.includes = includes;
+         this.excludes = excludes;
+         this.maxDepth = maxDepth;
+         this.failFast = failFast;
+         this.latencyParser = latencyParser;
+         this.parsedDirs = (parsedDirs != null) ? new HashMap<>(parsedDirs) : null;
+      }
+
+      @Override
+      public AgentResults invoke(File dir, VirtualChannel channel) throws IOException {
+         PublishMetrics metrics = new PublishMetrics();
+         ResultDirParser parser = new ResultDirParser(failFast, latencyParser, metrics);
+         ResultDirScanner scanner = new ResultDirScanner(parser, includes, excludes, maxDepth, parsedDirs)
+             .failFast(failFast);
+         long start = PublishMetrics.start();
+         List<ResultDirScanner.Outcome> outcomes = scanner.scan(VirtualFile.forFile(dir));
+         metrics.stop(PublishMetrics.Phase.SCAN, start);
+         return new AgentResults(outcomes, metrics);
+      }
    }
 
    @SuppressWarnings("unused") // used by framework
@@ -236,5 +601,70 @@ public class PureLoadPublisher extends Recorder implements SimpleBuildStep {
       public String getDisplayName() {
          return "Publish PureLoad Results";
       }
+
+      /** Validate KPI rules. */
+      @SuppressWarnings("unused") // used by config.jelly
+      public FormValidation doCheckRules(@QueryParameter String value) {
+         try {
+            KpiPolicy.parse(value);
+            return FormValidation.ok();
+         }
+         catch (IllegalArgumentException e) {
+            return FormValidation.error(e.getMessage());
+         }
+      }
+
+      /** Validate response time columns. */
+      @SuppressWarnings("unused") // used by config.jelly
+      public FormValidation doCheckLatencyColumns(@QueryParameter String value) {
+         try {
+            LatencyCsvParser.of("", value);
+            return FormValidation.ok();
+         }
+         catch (IllegalArgumentException e) {
+            return FormValidation.error(e.getMessage());
+         }
+      }
+
+      /** @return statistics of parse cache, shown in global configuration */
+      @SuppressWarnings("unused") // used by global.jelly
+      public String getParseCacheStatistics() {
+         ResultCache cache = ResultCache.getInstance();
+         if (cache.getMaxSize() <= 0) {
+            return "Disabled";
+         }
+         long hits = cache.getHits();
+         long misses = cache.getMisses();
+         long lookups = hits + misses;
+         return MessageFormat.format("{0} entries, {1} of {2} KB used. {3} hits, {4} misses ({5,number,percent} hit rate), " +
+                                     "{6} evictions.",
+                                     cache.getEntryCount(), cache.getSize() / 1024, cache.getMaxSize() / 1024,
+                                     hits, misses, (lookups > 0) ? (double) hits / lookups : 0.0,
+                                     cache.getEvictions());
+      }
+
+      /** @return state of background publishing, shown in global configuration */
+      @SuppressWarnings("unused") // used by global.jelly
+      public String getPublishQueueStatistics() {
+         PublishExecutor executor = PublishExecutor.getInstance();
+         return MessageFormat.format("{0} of {1} workers active, {2} of {3} queued.", executor.getActive(),
+                                     executor.getThreads(), executor.getQueued(), executor.getQueueSize());
+      }
+
+      /** @return summary of publish metrics since start */
+      @SuppressWarnings("unused") // used by global.jelly
+      public String getPublishStatistics() {
+         PublishStatistics statistics = PublishStatistics.get();
+         return (statistics != null) ? statistics.toString() : "Not available";
+      }
+
+      /** Clear parse cache. */
+      @SuppressWarnings("unused") // used by global.jelly
+      @RequirePOST
+      public HttpResponse doClearParseCache() {
+         Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+         ResultCache.getInstance().clear();
+         return HttpResponses.forwardToPreviousPage();
+      }
    }
 }
@@ -4,41 +4,435 @@
 
 package com.pureload.jenkins.plugin.integration;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.servlet.http.HttpServletResponse;
 
 import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.ResultCodec;
 import hudson.model.Action;
+import hudson.model.Api;
+import hudson.model.Result;
 import hudson.model.Run;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
 /**
  * Action used to set/get JUnit report.
+ * The results are stored in a separate file in the build directory (not in build.xml), using
+ * the compact {@link ResultCodec} format, and are loaded when first accessed. Loaded results
+ * are kept using a soft reference, so they may be reclaimed if memory is needed.
+ * <p>
+ * Results are exported using the remote API (<code>pureload-results/api/json</code>), with depth and tree
+ * filtering, and written directly to the response.
+ * <p>
+ * Results may be published repeatedly during a build. The state of each parsed result directory is
+ * kept, so only new or changed result directories are parsed and updated in place.
+ * <p>
+ * Results may be compared with the results of a baseline build (<code>pureload-results/compare</code> and
+ * <code>pureload-results/compareJson</code>), see {@link ResultComparison}.
+ * <p>
+ * When results are published in the background, the action is added before results are parsed, and shows
+ * that results are processing until done. The result of the KPI gate, which is then not applied to the build,
+ * and a log of the publish (<code>pureload-results/publishLog</code>) are kept by the action. The number of
+ * pending publishes is stored with the build, so publishes that never completed (e.g. lost by a restart of the
+ * controller) are shown as incomplete when the build is loaded again.
  */
 @SuppressWarnings("WeakerAccess")
+@ExportedBean
 public class PureLoadResultsAction implements Action {
+   static final String RESULTS_FILENAME = "pureload-results.bin";
+   static final String PUBLISH_LOG_FILENAME = "pureload-publish.log";
+
    private static final Logger LOGGER = Logger.getLogger(PureLoadResultsAction.class.getName());
 
    private final Run<?, ?> build;
+   // Only set for builds recorded by older versions, or if results could not be stored in separate file.
    private List<PureLoadResult> pureloadResults;
+   private transient Reference<List<PureLoadResult>> resultsRef;
+   // State of parsed result directories, by path
+   private Map<String, ResultDirState> parsedDirs;
+   // Worst KPI gate result of publishes in background, or null if none
+   private Result backgroundResult;
+   // Publishes in background queued or running, as stored with build
+   private int pending;
+   // Publishes in background did not complete (pending when build was loaded)?
+   private boolean incomplete;
+   private transient int processing; // Publishes in background queued or running
+   private transient Object publishLock;
 
    PureLoadResultsAction(final Run<?, ?> build) {
       this.build = build;
    }
 
+   /**
+    * @return results action of build, added to the build if not found. Concurrent publishes of a build
+    *         (e.g. from parallel branches) get the same action.
+    */
+   static synchronized PureLoadResultsAction getOrCreate(Run<?, ?> build) {
+      PureLoadResultsAction action = build.getAction(PureLoadResultsAction.class);
+      if (action == null) {
+         action = new PureLoadResultsAction(build);
+         build.addAction(action);
+      }
+      return action;
+   }
+
    public Run<?, ?> getBuild() {
       return build;
    }
 
    public void setPureLoadResults(List<PureLoadResult> pureloadResults) {
-      this.pureloadResults = pureloadResults;
+      try {
+         writeResults(pureloadResults);
+         synchronized (this) {
+            this.pureloadResults = null;
+            this.resultsRef = new SoftReference<>(pureloadResults);
+         }
+      }
+      catch (IOException e) {
+         LOGGER.log(Level.WARNING, "Can not store PureLoad results; keeping them in build", e);
+         synchronized (this) {
+            this.pureloadResults = pureloadResults;
+            this.resultsRef = null;
+         }
+      }
+   }
+
+   /** @return copy of state of parsed result directories, by path, or null if no results are published */
+   synchronized Map<String, ResultDirState> getParsedDirs() {
+      return (parsedDirs != null) ? new HashMap<>(parsedDirs) : null;
+   }
+
+   /** @return true while results are published in background */
+   @SuppressWarnings("unused") // used by index.jelly
+   public synchronized boolean isProcessing() { return processing > 0; }
+
+   /** @return worst KPI gate result of results published in background (not applied to build), or null */
+   @SuppressWarnings("unused") // used by index.jelly
+   public synchronized Result getBackgroundResult() { return backgroundResult; }
+
+   /** @return true if publishes in background did not complete, e.g. lost by a restart of the controller */
+   @SuppressWarnings("unused") // used by index.jelly
+   public synchronized boolean isIncomplete() { return incomplete; }
+
+   /** Called when a publish in background is queued. The build should be saved, to keep the pending publish. */
+   synchronized void startProcessing() {
+      processing++;
+      pending++;
+   }
+
+   /**
+    * Called when a publish in background is done. The build should be saved.
+    * @param result gate result to keep (not applied to build), or null
+    */
+   synchronized void finishProcessing(Result result) {
+      processing--;
+      pending = Math.max(0, pending - 1);
+      if ((result != null) && ((backgroundResult == null) || result.isWorseThan(backgroundResult))) {
+         backgroundResult = result;
+      }
+   }
+
+   /** Publishes pending when the build was stored never completed. */
+   private Object readResolve() {
+      if (pending > 0) {
+         LOGGER.warning("PureLoad results of " + build + " were not published; " + pending +
+                        " publish(es) in background did not complete");
+         incomplete = true;
+         pending = 0;
+      }
+      return this;
+   }
+
+   /** @return lock held while results of build are published */
+   synchronized Object getPublishLock() {
+      if (publishLock == null) {
+         publishLock = new Object();
+      }
+      return publishLock;
+   }
+
+   /** @return file logging publishes in background */
+   File getPublishLogFile() {
+      return new File(build.getRootDir(), PUBLISH_LOG_FILENAME);
+   }
+
+   /** @return true if results have been published in background */
+   @SuppressWarnings("unused") // used by index.jelly
+   public boolean hasPublishLog() {
+      return getPublishLogFile().exists();
+   }
+
+   /** Log of publishes in background, as plain text. */
+   @SuppressWarnings("unused") // used by stapler
+   public void doPublishLog(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      File file = getPublishLogFile();
+      if (!file.exists()) {
+         rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+         return;
+      }
+      rsp.setContentType("text/plain;charset=UTF-8");
+      try (InputStream is = new FileInputStream(file)) {
+         OutputStream os = rsp.getOutputStream();
+         byte[] buffer = new byte[8192];
+         int n;
+         while ((n = is.read(buffer)) > 0) {
+            os.write(buffer, 0, n);
+         }
+         os.flush();
+      }
+   }
+
+   /**
+    * Add new results, and replace results of result directories parsed again.
+    * @param outcomes parsed (not failed or unchanged) outcomes
+    * @param replace replace all results (and state of parsed result directories)?
+    * @return all results
+    */
+   synchronized List<PureLoadResult> updateResults(List<ResultDirScanner.Outcome> outcomes, boolean replace) {
+      Map<String, PureLoadResult> updated = new LinkedHashMap<>();
+      for (ResultDirScanner.Outcome outcome : outcomes) {
+         outcome.getResult().setPath(outcome.getPath());
+         updated.put(outcome.getPath(), outcome.getResult());
+      }
+      List<PureLoadResult> results = replace ? new ArrayList<PureLoadResult>() : new ArrayList<>(loadResults());
+      for (Iterator<PureLoadResult> it = results.iterator(); it.hasNext(); ) {
+         String path = it.next().getPath();
+         if ((path != null) && updated.containsKey(path)) {
+            it.remove();
+         }
+      }
+      results.addAll(updated.values());
+      // Sort results based on execution date.
+      Collections.sort(results, PureLoadResult.BY_NAME_DATE);
+      setPureLoadResults(results);
+
+      if ((parsedDirs == null) || replace) {
+         parsedDirs = new HashMap<>();
+      }
+      for (ResultDirScanner.Outcome outcome : outcomes) {
+         if (outcome.getState() == null) {
+            continue; // Merged
+         }
+         if (!outcome.getResult().getJunitReport().isTruncated()) {
+            parsedDirs.put(outcome.getPath(), outcome.getState());
+         }
+         else {
+            parsedDirs.remove(outcome.getPath()); // Parse completely next time
+         }
+      }
+      return results;
    }
 
    @SuppressWarnings("unused") // used by index.jelly
+   @Exported(name = "results")
    public List<PureLoadResult> getPureLoadResults() {
-      if ((pureloadResults == null) || (pureloadResults.isEmpty())) {
+      List<PureLoadResult> results = loadResults();
+      if (((results == null) || (results.isEmpty())) && !isProcessing()) {
          LOGGER.severe("Can not get parsed results(s)");
       }
-      return pureloadResults;
+      return results;
+   }
+
+   /**
+    * Results of one PLC, used for the fragments of the results page (<code>plc/N/...</code>).
+    * @return view of PLC result with index, or null if not found
+    */
+   @SuppressWarnings("unused") // used by stapler
+   public PlcResultView getPlc(String index) {
+      List<PureLoadResult> results = loadResults();
+      try {
+         int i = Integer.parseInt(index);
+         return ((i >= 0) && (i < results.size())) ? new PlcResultView(this, i, results.get(i)) : null;
+      }
+      catch (NumberFormatException e) {
+         return null;
+      }
+   }
+
+   /**
+    * Comparison with baseline build.
+    * Request parameters: with (<code>previous</code>, <code>lastSuccessful</code> or build number),
+    * sort (<code>regression</code>, <code>delta</code> or <code>name</code>), count and regressions
+    * (only regressions).
+    * @return comparison, or null if there is no baseline build with results
+    */
+   @SuppressWarnings("unused") // used by compare.jelly
+   public ResultComparison getComparison(StaplerRequest req) {
+      Run<?, ?> baselineBuild = getBaselineBuild(req.getParameter("with"));
+      if (baselineBuild == null) {
+         return null;
+      }
+      List<PureLoadResult> baseline = baselineBuild.getAction(PureLoadResultsAction.class).loadResults();
+      return ResultComparison.of(baselineBuild, loadResults(), baseline, sortParameter(req),
+                                 intParameter(req, "count", 0), Boolean.parseBoolean(req.getParameter("regressions")));
+   }
+
+   /**
+    * Comparison with baseline build as JSON. Parameters as for {@link #getComparison(StaplerRequest)}.
+    */
+   @SuppressWarnings("unused") // used by stapler
+   public void doCompareJson(StaplerRequest req, StaplerResponse rsp) throws IOException {
+      ResultComparison comparison = getComparison(req);
+      if (comparison == null) {
+         rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+         return;
+      }
+      rsp.setContentType("application/json;charset=UTF-8");
+      PrintWriter w = rsp.getWriter();
+      w.write("{\"build\":");
+      w.print(build.getNumber());
+      w.write(",\"baseline\":");
+      w.print(comparison.getBaselineBuild().getNumber());
+      w.write(",\"total\":");
+      w.print(comparison.getTotal());
+      w.write(",\"regressions\":");
+      w.print(comparison.getRegressions());
+      w.write(",\"deltas\":[");
+      boolean first = true;
+      for (ResultComparison.Delta delta : comparison.getDeltas()) {
+         if (!first) {
+            w.write(',');
+         }
+         first = false;
+         w.write("{\"plc\":");
+         Json.writeString(w, delta.getPlcName());
+         w.write(",\"name\":");
+         Json.writeString(w, delta.getName());
+         w.write(",\"type\":");
+         Json.writeString(w, delta.getType().name());
+         w.write(",\"baselineValue\":");
+         Json.writeNumber(w, delta.getBaselineValue());
+         w.write(",\"value\":");
+         Json.writeNumber(w, delta.getValue());
+         w.write(",\"absolute\":");
+         Json.writeNumber(w, delta.getAbsolute());
+         w.write(",\"relative\":");
+         Json.writeNumber(w, delta.getRelative());
+         w.write(",\"baselineOk\":");
+         w.print(delta.getBaselineOk());
+         w.write(",\"ok\":");
+         w.print(delta.getOk());
+         w.write(",\"regression\":");
+         w.print(delta.isRegression());
+         w.write('}');
+      }
+      w.write("]}");
+      w.flush();
+   }
+
+   /**
+    * @param with <code>previous</code> (default), <code>lastSuccessful</code> or build number
+    * @return baseline build with results, or null if none
+    */
+   Run<?, ?> getBaselineBuild(String with) {
+      if ((with != null) && with.trim().matches("\\d+")) {
+         Run<?, ?> baselineBuild = build.getParent().getBuildByNumber(Integer.parseInt(with.trim()));
+         return ((baselineBuild != null) && (baselineBuild.getAction(PureLoadResultsAction.class) != null)) ?
+                baselineBuild : null;
+      }
+      boolean successfulOnly = "lastSuccessful".equals(with);
+      for (Run<?, ?> r = build.getPreviousBuild(); r != null; r = r.getPreviousBuild()) {
+         if ((r.getAction(PureLoadResultsAction.class) != null) &&
+             (!successfulOnly || (r.getResult() == Result.SUCCESS)))
+         {
+            return r;
+         }
+      }
+      return null;
+   }
+
+   private static ResultComparison.Sort sortParameter(StaplerRequest req) {
+      String sort = req.getParameter("sort");
+      for (ResultComparison.Sort s : ResultComparison.Sort.values()) {
+         if (s.name().equalsIgnoreCase(sort)) {
+            return s;
+         }
+      }
+      return ResultComparison.Sort.REGRESSION;
+   }
+
+   private static int intParameter(StaplerRequest req, String name, int defaultValue) {
+      String value = req.getParameter(name);
+      if (value == null) {
+         return defaultValue;
+      }
+      try {
+         return Integer.parseInt(value.trim());
+      }
+      catch (NumberFormatException e) {
+         return defaultValue;
+      }
+   }
+
+   /** Remote API of results. */
+   public Api getApi() {
+      return new Api(this);
+   }
+
+   private synchronized List<PureLoadResult> loadResults() {
+      if (pureloadResults != null) {
+         return pureloadResults;
+      }
+      List<PureLoadResult> results = (resultsRef != null) ? resultsRef.get() : null;
+      if (results == null) {
+         results = readResults();
+         resultsRef = new SoftReference<>(results);
+      }
+      return results;
+   }
+
+   private List<PureLoadResult> readResults() {
+      File file = getResultsFile();
+      if (!file.exists()) {
+         return Collections.emptyList();
+      }
+      try (InputStream is = new FileInputStream(file)) {
+         return ResultCodec.read(is);
+      }
+      catch (IOException | RuntimeException e) {
+         LOGGER.log(Level.WARNING, "Can not read PureLoad results: " + file, e);
+         return Collections.emptyList();
+      }
+   }
+
+   private void writeResults(List<PureLoadResult> results) throws IOException {
+      File file = getResultsFile();
+      File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+      try (OutputStream os = new FileOutputStream(tmpFile)) {
+         ResultCodec.write(results, os);
+      }
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+   }
+
+   /** @return time (ms) results were last stored, or 0 if not known */
+   long getLastModified() {
+      return getResultsFile().lastModified();
+   }
+
+   private File getResultsFile() {
+      return new File(build.getRootDir(), RESULTS_FILENAME);
    }
 
    @Override
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.pureload.jenkins.plugin.parser.ParseException;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.ResultCodec;
+import jenkins.util.VirtualFile;
+
+/**
+ * Controller side cache of parsed result directories, so result directories published again
+ * (rebuilds, replays, promotions etc) are not parsed again.
+ * <p>
+ * Entries are keyed by the path of the result directory relative to the archive root, the size and modification
+ * time of the files parsed (see {@link ResultDirState}, collected by the scanner) and the configuration of the
+ * parser (its string representation). A lookup only needs the state of the files, so a hit does not read them.
+ * Results archived again with the same path and file times (archiving keeps modification times) are found,
+ * also from another build. Entries are stored in the compact {@link ResultCodec} format, and each hit returns
+ * a new copy of the results. Least recently used entries are evicted when the total size exceeds the budget.
+ * <p>
+ * The cache is kept in memory only, and is empty after a restart of the controller.
+ */
+class ResultCache {
+   /** Max total size of cached entries (bytes); 0 to disable cache. */
+   static final long MAX_SIZE = Long.getLong(ResultCache.class.getName() + ".maxSize", 32L * 1024 * 1024);
+
+   private static final Logger LOGGER = Logger.getLogger(ResultCache.class.getName());
+   private static final ResultCache INSTANCE = new ResultCache(MAX_SIZE);
+
+   private final long maxSize;
+   private final Map<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+   private long size;
+   private long hits;
+   private long misses;
+   private long evictions;
+
+   ResultCache(long maxSize) {
+      this.maxSize = maxSize;
+   }
+
+   static ResultCache getInstance() {
+      return INSTANCE;
+   }
+
+   /** @return parser using this cache, parsing with given parser on cache misses */
+   ResultDirScanner.ResultParser parser(final ResultDirParser parser) {
+      if (maxSize <= 0) {
+         return parser;
+      }
+      return new ResultDirScanner.ResultParser() {
+         @Override
+         public PureLoadResult parse(VirtualFile resultDir, String path, ResultDirState state)
+             throws IOException, ParseException
+         {
+            String key = key(path, state, parser.latencyFile(resultDir), parser);
+            PureLoadResult result = get(key);
+            if (result == null) {
+               result = parser.parse(resultDir, path, state);
+               if (!result.getJunitReport().isTruncated()) {
+                  put(key, result);
+               }
+            }
+            return result;
+         }
+      };
+   }
+
+   /** @return key of result directory; the latency file (if any) is only checked for size and time */
+   private static String key(String path, ResultDirState state, VirtualFile latencyFile, ResultDirParser parser)
+       throws IOException
+   {
+      StringBuilder key = new StringBuilder(path).append('#').append(state);
+      if ((latencyFile != null) && latencyFile.isFile()) {
+         key.append("#csv=").append(latencyFile.length()).append('@').append(latencyFile.lastModified());
+      }
+      return key.append('#').append(parser).toString();
+   }
+
+   private PureLoadResult get(String key) {
+      byte[] data;
+      synchronized (this) {
+         data = entries.get(key);
+         if (data == null) {
+            misses++;
+            return null;
+         }
+         hits++;
+      }
+      try {
+         return ResultCodec.read(new ByteArrayInputStream(data)).get(0);
+      }
+      catch (IOException | RuntimeException e) {
+         LOGGER.log(Level.WARNING, "Can not read cached result: " + key, e);
+         remove(key);
+         return null;
+      }
+   }
+
+   private void put(String key, PureLoadResult result) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+         ResultCodec.write(Collections.singletonList(result), out);
+      }
+      catch (IOException e) {
+         LOGGER.log(Level.WARNING, "Can not cache result: " + key, e);
+         return;
+      }
+      byte[] data = out.toByteArray();
+      if (data.length > maxSize / 4) {
+         return; // Too large to cache
+      }
+      synchronized (this) {
+         byte[] old = entries.put(key, data);
+         if (old != null) {
+            size -= old.length;
+         }
+         size += data.length;
+         Iterator<byte[]> it = entries.values().iterator();
+         while ((size > maxSize) && it.hasNext()) {
+            size -= it.next().length;
+            it.remove();
+            evictions++;
+         }
+      }
+   }
+
+   private synchronized void remove(String key) {
+      byte[] old = entries.remove(key);
+      if (old != null) {
+         size -= old.length;
+      }
+   }
+
+   /** Remove all entries. */
+   synchronized void clear() {
+      entries.clear();
+      size = 0;
+   }
+
+   synchronized long getHits() { return hits; }
+   synchronized long getMisses() { return misses; }
+   synchronized long getEvictions() { return evictions; }
+   synchronized int getEntryCount() { return entries.size(); }
+   synchronized long getSize() { return size; }
+   long getMaxSize() { return maxSize; }
+}
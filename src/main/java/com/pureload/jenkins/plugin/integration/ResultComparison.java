@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+import hudson.model.Run;
+
+/**
+ * Comparison of the KPI and scenario results of a build with the results of a baseline build.
+ * <p>
+ * Results are joined by PLC, type and name in one pass over both builds, using the persisted results, and each
+ * pair gives an absolute and relative delta of its value (KPI value, or scenario time).
+ * <p>
+ * The regression of a delta is its relative change in the direction that is worse: a longer scenario time, or a
+ * KPI value moving towards its threshold (towards the high threshold if only that is set, towards the low threshold
+ * if only that is set, or towards the nearest of both). Deltas are sorted by largest regression, with results that
+ * changed from ok to failed first.
+ */
+@SuppressWarnings("WeakerAccess")
+public class ResultComparison {
+   /** Default number of deltas shown. */
+   static final int DEFAULT_COUNT = 100;
+   /** Max number of deltas shown. */
+   static final int MAX_COUNT = 5000;
+
+   /** Sort order of deltas. */
+   public enum Sort {
+      /** Largest regression first */
+      REGRESSION,
+      /** Largest absolute relative delta first */
+      DELTA,
+      /** By PLC and name, in order of results */
+      NAME
+   }
+
+   /** Compare by regression; status changes first. */
+   private static final Comparator<Delta> BY_REGRESSION = new Comparator<Delta>() {
+      @Override
+      public int compare(Delta d1, Delta d2) {
+         int c = Integer.compare(d2.getStatusChange(), d1.getStatusChange());
+         return (c != 0) ? c : Double.compare(d2.getRegression(), d1.getRegression());
+      }
+   };
+
+   /** Compare by absolute relative delta. */
+   private static final Comparator<Delta> BY_DELTA = new Comparator<Delta>() {
+      @Override
+      public int compare(Delta d1, Delta d2) {
+         return Double.compare(magnitude(d2.getRelative()), magnitude(d1.getRelative()));
+      }
+
+      private double magnitude(double relative) {
+         return Double.isNaN(relative) ? -1 : Math.abs(relative);
+      }
+   };
+
+   private final Run<?, ?> baselineBuild;
+   private final List<Delta> deltas;
+   private final int total;
+   private final int regressions;
+   private final Sort sort;
+
+   private ResultComparison(Run<?, ?> baselineBuild, List<Delta> deltas, int total, int regressions, Sort sort) {
+      this.baselineBuild = baselineBuild;
+      this.deltas = deltas;
+      this.total = total;
+      this.regressions = regressions;
+      this.sort = sort;
+   }
+
+   /**
+    * Compare results.
+    * @param baselineBuild baseline build (may be null)
+    * @param results results of build
+    * @param baseline results of baseline build
+    * @param sort sort order
+    * @param count max number of deltas
+    * @param regressionsOnly only include regressions?
+    */
+   public static ResultComparison of(Run<?, ?> baselineBuild, List<PureLoadResult> results,
+                                     List<PureLoadResult> baseline, Sort sort, int count, boolean regressionsOnly)
+   {
+      count = (count > 0) ? Math.min(count, MAX_COUNT) : DEFAULT_COUNT;
+      Map<String, TestCaseResult> baselineResults = new LinkedHashMap<>();
+      Map<String, String> baselinePlcs = new LinkedHashMap<>();
+      for (PureLoadResult result : baseline) {
+         JUnitReport report = result.getJunitReport();
+         for (TestCaseResult testCase : report.getResults()) {
+            String key = key(report.getPlcFileName(), testCase);
+            if (!baselineResults.containsKey(key)) {
+               baselineResults.put(key, testCase);
+               baselinePlcs.put(key, report.getPlcFileName());
+            }
+         }
+      }
+
+      List<Delta> all = new ArrayList<>();
+      for (PureLoadResult result : results) {
+         JUnitReport report = result.getJunitReport();
+         for (TestCaseResult testCase : report.getResults()) {
+            String key = key(report.getPlcFileName(), testCase);
+            if (baselinePlcs.containsKey(key)) {
+               baselinePlcs.remove(key);
+               all.add(new Delta(report.getPlcFileName(), baselineResults.get(key), testCase));
+            }
+            else if (!baselineResults.containsKey(key)) {
+               all.add(new Delta(report.getPlcFileName(), null, testCase));
+            }
+            // else: name repeated in build; first is compared
+         }
+      }
+      for (Map.Entry<String, String> removed : baselinePlcs.entrySet()) {
+         all.add(new Delta(removed.getValue(), baselineResults.get(removed.getKey()), null));
+      }
+
+      int regressions = 0;
+      List<Delta> deltas = new ArrayList<>(all.size());
+      for (Delta delta : all) {
+         if (delta.isRegression()) {
+            regressions++;
+         }
+         if (!regressionsOnly || delta.isRegression()) {
+            deltas.add(delta);
+         }
+      }
+      if (sort == Sort.REGRESSION) {
+         Collections.sort(deltas, BY_REGRESSION);
+      }
+      else if (sort == Sort.DELTA) {
+         Collections.sort(deltas, BY_DELTA);
+      }
+      int total = deltas.size();
+      return new ResultComparison(baselineBuild, (total > count) ? deltas.subList(0, count) : deltas, total,
+                                  regressions, sort);
+   }
+
+   private static String key(String plcFileName, TestCaseResult testCase) {
+      return plcFileName + '\n' + testCase.getType().name() + '\n' + testCase.getName();
+   }
+
+   public Run<?, ?> getBaselineBuild() { return baselineBuild; }
+   /** @return deltas, sorted and limited to count */
+   public List<Delta> getDeltas() { return deltas; }
+   /** @return number of deltas (before limited to count) */
+   public int getTotal() { return total; }
+   /** @return number of regressions */
+   public int getRegressions() { return regressions; }
+   public Sort getSort() { return sort; }
+
+   /** @return value formatted for display; empty if not a number */
+   @SuppressWarnings("unused") // used by compare.jelly
+   public String format(double value) {
+      return Double.isNaN(value) ? "" : String.format("%.2f", value);
+   }
+
+   /** @return relative delta formatted as percent; empty if not a number */
+   @SuppressWarnings("unused") // used by compare.jelly
+   public String percent(double relative) {
+      return Double.isNaN(relative) ? "" : String.format("%+.1f%%", relative * 100);
+   }
+
+   /** Delta of one KPI or scenario result. */
+   public static class Delta {
+      private final String plcName;
+      private final String name;
+      private final TestCaseResult.Type type;
+      private final TestCaseResult baseline;
+      private final TestCaseResult current;
+      private final double baselineValue;
+      private final double value;
+      private final double regression;
+
+      Delta(String plcName, TestCaseResult baseline, TestCaseResult current) {
+         TestCaseResult result = (current != null) ? current : baseline;
+         this.plcName = plcName;
+         this.name = result.getName();
+         this.type = result.getType();
+         this.baseline = baseline;
+         this.current = current;
+         this.baselineValue = valueOf(baseline);
+         this.value = valueOf(current);
+         this.regression = computeRegression();
+      }
+
+      public String getPlcName() { return plcName; }
+      public String getName() { return name; }
+      public TestCaseResult.Type getType() { return type; }
+      /** @return true if only in build (not in baseline) */
+      public boolean isAdded() { return baseline == null; }
+      /** @return true if only in baseline (not in build) */
+      public boolean isRemoved() { return current == null; }
+      /** @return baseline value, or NaN if none */
+      public double getBaselineValue() { return baselineValue; }
+      /** @return value, or NaN if none */
+      public double getValue() { return value; }
+      /** @return absolute delta, or NaN if not both values are known */
+      public double getAbsolute() { return value - baselineValue; }
+      /** @return delta relative to baseline value, or NaN if not known */
+      public double getRelative() {
+         double absolute = getAbsolute();
+         if (Double.isNaN(absolute)) {
+            return Double.NaN;
+         }
+         if (baselineValue == 0) {
+            return (absolute == 0) ? 0 : Double.NaN;
+         }
+         return absolute / Math.abs(baselineValue);
+      }
+      public Boolean getBaselineOk() { return (baseline != null) ? baseline.isOk() : null; }
+      public Boolean getOk() { return (current != null) ? current.isOk() : null; }
+
+      /** @return 1 if changed from ok to failed, -1 if changed from failed to ok, otherwise 0 */
+      public int getStatusChange() {
+         if ((baseline == null) || (current == null) || (baseline.isOk() == current.isOk())) {
+            return 0;
+         }
+         return current.isOk() ? -1 : 1;
+      }
+
+      /** @return relative change in the direction that is worse (negative for improvement), 0 if not known */
+      public double getRegression() { return regression; }
+
+      /** @return true if status or value regressed */
+      public boolean isRegression() {
+         int statusChange = getStatusChange();
+         return (statusChange > 0) || ((statusChange == 0) && (regression > 0));
+      }
+
+      private double computeRegression() {
+         double relative = getRelative();
+         if (Double.isNaN(relative)) {
+            double absolute = getAbsolute();
+            relative = Double.isNaN(absolute) ? 0 : Math.signum(absolute);
+         }
+         return worseDirection() * relative;
+      }
+
+      /** @return 1 if higher values are worse, -1 if lower values are worse, 0 if not known */
+      private int worseDirection() {
+         if (type == TestCaseResult.Type.Scenario) {
+            return 1;
+         }
+         if (current == null) {
+            return 0;
+         }
+         double high = current.getKpiThresholdHigh();
+         double low = current.getKpiThresholdLow();
+         boolean hasHigh = isThreshold(high);
+         boolean hasLow = isThreshold(low);
+         if (hasHigh && hasLow) {
+            return ((high - value) <= (value - low)) ? 1 : -1;
+         }
+         return hasHigh ? 1 : (hasLow ? -1 : 0);
+      }
+
+      /** A threshold of 0 is not set (PureLoad writes 0 for thresholds that are not used). */
+      private static boolean isThreshold(double threshold) {
+         return !Double.isNaN(threshold) && (threshold != 0);
+      }
+
+      private static double valueOf(TestCaseResult result) {
+         if (result == null) {
+            return Double.NaN;
+         }
+         if (result.getType() == TestCaseResult.Type.KPI) {
+            return result.getKpiDoubleValue();
+         }
+         return (result.getExecTime() >= 0) ? result.getExecTime() : Double.NaN;
+      }
+   }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.pureload.jenkins.plugin.metrics.PublishMetrics;
+import com.pureload.jenkins.plugin.parser.ExecutionReportParser;
+import com.pureload.jenkins.plugin.parser.JUnitParser;
+import com.pureload.jenkins.plugin.parser.KpiListener;
+import com.pureload.jenkins.plugin.parser.LatencyCsvParser;
+import com.pureload.jenkins.plugin.parser.ParseException;
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import jenkins.util.VirtualFile;
+import org.apache.commons.io.input.CountingInputStream;
+
+/**
+ * Parses one PureLoad result directory; the JUnit report, the total summary of the execution report and
+ * (if configured) response times from a CSV file.
+ * Does not depend on Jenkins controller state and may be used on a build agent.
+ * In fail fast mode, parsing stops at the first failed KPI and the total summary is not extracted.
+ * <p>
+ * Time, bytes read and testcases parsed are recorded in the given {@link PublishMetrics}.
+ */
+class ResultDirParser implements ResultDirScanner.ResultParser {
+
+   static final String JUNIT_REPORT_DIR = "junit";
+   static final String JUNIT_REPORT_FILENAME = "junit-report.xml";
+   private static final String EXECUTION_REPORT_DIR = "report";
+   private static final String EXECUTION_REPORT_FILENAME = "report.html";
+   private static final Logger LOGGER = Logger.getLogger(ResultDirParser.class.getName());
+
+   private final boolean failFast;
+   private final LatencyCsvParser latencyParser;
+   private final PublishMetrics metrics;
+
+   ResultDirParser() {
+      this(false);
+   }
+
+   ResultDirParser(boolean failFast) {
+      this(failFast, null, new PublishMetrics());
+   }
+
+   /** @param latencyParser parser of response times, or null to not parse response times */
+   ResultDirParser(boolean failFast, LatencyCsvParser latencyParser, PublishMetrics metrics) {
+      this.failFast = failFast;
+      this.latencyParser = latencyParser;
+      this.metrics = metrics;
+   }
+
+   @Override
+   public PureLoadResult parse(VirtualFile resultDir, String path, ResultDirState state)
+       throws IOException, ParseException
+   {
+      return parse(resultDir);
+   }
+
+   PureLoadResult parse(VirtualFile resultDir) throws IOException, ParseException {
+      VirtualFile junitFile = junitReportFile(resultDir);
+
+      debug("Parsing JUnit report... ");
+      JUnitReport junitReport = parseJUnitReport(junitFile);
+      debug("Parsed JUnit report: {0}", junitReport);
+
+      PureLoadResult pureloadResult = new PureLoadResult(junitReport);
+      if (!junitReport.isTruncated()) {
+         parseTotalSummary(executionReportFile(resultDir), pureloadResult);
+         if (latencyParser != null) {
+            parseLatencies(latencyFile(resultDir), pureloadResult);
+         }
+      }
+
+      return pureloadResult;
+   }
+
+   private JUnitReport parseJUnitReport(VirtualFile junitFile) throws ParseException {
+      long start = PublishMetrics.start();
+      CountingInputStream is;
+      try {
+         is = new CountingInputStream(junitFile.open());
+      }
+      catch (IOException e) {
+         throw new ParseException("Can not parse: '" + junitFile.getName() + "': " + e, e);
+      }
+      JUnitReport junitReport = JUnitParser.parse(junitFile.getName(), is,
+                                                  failFast ? KpiListener.STOP_ON_BREACH : null);
+      metrics.stop(PublishMetrics.Phase.PARSE, start);
+      metrics.addBytesRead(is.getByteCount());
+      metrics.addTestCases(junitReport.getKpis().size() + junitReport.getScenarios().size());
+      return junitReport;
+   }
+
+   private void parseTotalSummary(VirtualFile reportFile, PureLoadResult pureloadResult) throws IOException {
+      if (reportFile.isFile() && reportFile.canRead()) {
+         long start = PublishMetrics.start();
+         try (CountingInputStream is = new CountingInputStream(reportFile.open())) {
+            ExecutionReportParser.parseTotalSummary(is, ExecutionReportParser.REPORT_CHARSET, pureloadResult);
+            metrics.addBytesRead(is.getByteCount());
+         }
+         metrics.stop(PublishMetrics.Phase.SUMMARY, start);
+      }
+   }
+
+   private void parseLatencies(VirtualFile csvFile, PureLoadResult pureloadResult) throws IOException {
+      if (csvFile.isFile() && csvFile.canRead()) {
+         long start = PublishMetrics.start();
+         try (CountingInputStream is = new CountingInputStream(csvFile.open())) {
+            latencyParser.parse(is, pureloadResult);
+            metrics.addBytesRead(is.getByteCount());
+         }
+         metrics.stop(PublishMetrics.Phase.LATENCIES, start);
+      }
+   }
+
+   /** @return CSV file with response times (may not exist), or null if response times are not parsed */
+   VirtualFile latencyFile(VirtualFile resultDir) {
+      return (latencyParser != null) ? resultDir.child(latencyParser.getPath()) : null;
+   }
+
+   /** @return configuration that parsed results depend on, used as part of cache keys */
+   @Override
+   public String toString() {
+      return "ResultDirParser{" + (failFast ? "failFast, " : "") + latencyParser + '}';
+   }
+
+   static VirtualFile junitReportFile(VirtualFile resultDir) {
+      return resultDir.child(JUNIT_REPORT_DIR).child(JUNIT_REPORT_FILENAME);
+   }
+
+   static VirtualFile executionReportFile(VirtualFile resultDir) {
+      return resultDir.child(EXECUTION_REPORT_DIR).child(EXECUTION_REPORT_FILENAME);
+   }
+
+   private static void debug(String msg, Object... args) {
+      if (LOGGER.isLoggable(Level.FINE)) {
+         LOGGER.fine(MessageFormat.format(msg, args));
+      }
+   }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import com.pureload.jenkins.plugin.parser.ParseException;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import jenkins.util.VirtualFile;
+
+/**
+ * Finds and parses PureLoad result directories in a (artifact) file tree.
+ * Listing of directories and parsing of found result directories are done in parallel
+ * using a bounded fork-join pool. Outcomes are returned in tree traversal order, so
+ * the caller can report them the same way as if the tree was walked sequentially.
+ * <p>
+ * The scan is limited by include/exclude patterns (matched against directory paths relative
+ * to the root) and a max depth. Subtrees that can not contain included directories are
+ * never listed.
+ * <p>
+ * Result directories that are unchanged since they were last parsed (same {@link ResultDirState})
+ * are not parsed again, but reported as unchanged.
+ * <p>
+ * In fail fast mode, the scan stops (no more directories are parsed) once a result with a failed
+ * KPI is found. Outcomes found so far are still returned.
+ */
+class ResultDirScanner {
+
+   /** Max number of threads used to scan and parse, shared by all builds. */
+   static final int PARALLELISM =
+       Integer.getInteger(ResultDirScanner.class.getName() + ".parallelism",
+                          Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+   private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, PARALLELISM));
+   private static final Logger LOGGER = Logger.getLogger(ResultDirScanner.class.getName());
+
+   /** Parser of one result directory. */
+   interface ResultParser {
+      /**
+       * @param path path of result directory, relative to scanned root
+       * @param state state of files in result directory when scanned
+       */
+      PureLoadResult parse(VirtualFile resultDir, String path, ResultDirState state) throws IOException, ParseException;
+   }
+
+   /** Outcome from one result directory; either a result, a parse error, or unchanged. */
+   static final class Outcome implements Serializable {
+      private static final long serialVersionUID = 1L;
+
+      private final String path;
+      private final PureLoadResult result;
+      private final ParseException error;
+      private final ResultDirState state;
+
+      private Outcome(String path, PureLoadResult result, ParseException error, ResultDirState state) {
+         this.path = path;
+         this.result = result;
+         this.error = error;
+         this.state = state;
+      }
+
+      /** @return outcome with result merged from several result directories (not parsed again if unchanged) */
+      static Outcome merged(String path, PureLoadResult result) {
+         return new Outcome(path, result, null, null);
+      }
+
+      /** @return path of result directory, relative to scanned root. */
+      String getPath() { return path; }
+      PureLoadResult getResult() { return result; }
+      ParseException getError() { return error; }
+      /** @return state of result directory when parsed, or null if merged */
+      ResultDirState getState() { return state; }
+      /** @return true if result directory is unchanged since last parsed (no result or error). */
+      boolean isUnchanged() { return (result == null) && (error == null); }
+   }
+
+   private final ResultParser parser;
+   private final PathPatterns includes;
+   private final PathPatterns excludes;
+   private final int maxDepth;
+   private final Map<String, ResultDirState> parsed;
+   private final AtomicBoolean stopped = new AtomicBoolean();
+   private boolean failFast;
+
+   ResultDirScanner(ResultParser parser) {
+      this(parser, null, null, 0, null);
+   }
+
+   /**
+    * @param includes comma separated patterns of result directories to include, null to include all
+    * @param excludes comma separated patterns of directories to exclude, or null
+    * @param maxDepth max depth of result directories (below root), 0 for no limit
+    * @param parsed state of result directories already parsed (by path), or null
+    */
+   ResultDirScanner(ResultParser parser, String includes, String excludes, int maxDepth,
+                    Map<String, ResultDirState> parsed)
+   {
+      this.parser = parser;
+      this.includes = PathPatterns.parse(includes, "**");
+      this.excludes = PathPatterns.parse(excludes, null);
+      this.maxDepth = maxDepth;
+      this.parsed = parsed;
+   }
+
+   /** Stop scan when a result with a failed KPI is found? */
+   ResultDirScanner failFast(boolean failFast) {
+      this.failFast = failFast;
+      return this;
+   }
+
+   /** @return true if scan was stopped since a failed KPI was found (in fail fast mode) */
+   boolean isStopped() {
+      return stopped.get();
+   }
+
+   /**
+    * Scan tree and parse all result directories found.
+    * @return outcome for each result directory, in tree traversal order.
+    */
+   List<Outcome> scan(VirtualFile root) throws IOException {
+      try {
+         return POOL.invoke(new ScanTask(root, "", includes.root(), excludes.root(), 0));
+      }
+      catch (UncheckedIOException e) {
+         throw e.getCause();
+      }
+   }
+
+   static boolean isResultDir(VirtualFile dir) throws IOException {
+      // The report file being a readable file implies that both the result directory
+      // and the JUnit directory exists.
+      VirtualFile junitReportFile = ResultDirParser.junitReportFile(dir);
+      return junitReportFile.isFile() && junitReportFile.canRead();
+   }
+
+   /** Task to scan one file (directory) in tree. */
+   private class ScanTask extends RecursiveTask<List<Outcome>> {
+      private final VirtualFile file;
+      private final String path;
+      private final PathPatterns.Match included;
+      private final PathPatterns.Match excluded;
+      private final int depth;
+
+      ScanTask(VirtualFile file, String path, PathPatterns.Match included, PathPatterns.Match excluded, int depth) {
+         this.file = file;
+         this.path = path;
+         this.included = included;
+         this.excluded = excluded;
+         this.depth = depth;
+      }
+
+      @Override
+      protected List<Outcome> compute() {
+         try {
+            if (stopped.get() || excluded.matches() || !file.isDirectory()) {
+               return Collections.emptyList();
+            }
+            if (included.matches() && isResultDir(file)) {
+               return Collections.singletonList(parse());
+            }
+            if (((maxDepth > 0) && (depth >= maxDepth)) || !included.canMatchDescendant()) {
+               // Nothing to find below this directory; prune.
+               return Collections.emptyList();
+            }
+            List<ScanTask> tasks = new ArrayList<>();
+            Set<String> names = included.literalChildren();
+            if (names != null) {
+               // Only specific children can match; no need to list directory.
+               for (String name : names) {
+                  tasks.add(newChildTask(file.child(name)));
+               }
+            }
+            else {
+               for (VirtualFile child : file.list()) {
+                  tasks.add(newChildTask(child));
+               }
+            }
+            for (ScanTask task : tasks) {
+               task.fork();
+            }
+            List<Outcome> outcomes = new ArrayList<>();
+            for (ScanTask task : tasks) {
+               // Join in listing order to keep a deterministic outcome order.
+               outcomes.addAll(task.join());
+            }
+            return outcomes;
+         }
+         catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+
+      private ScanTask newChildTask(VirtualFile child) {
+         String name = child.getName();
+         String childPath = path.isEmpty() ? name : path + '/' + name;
+         return new ScanTask(child, childPath, included.child(name), excluded.child(name), depth + 1);
+      }
+
+      private Outcome parse() throws IOException {
+         ResultDirState state = ResultDirState.of(file);
+         if ((parsed != null) && state.equals(parsed.get(path))) {
+            return new Outcome(path, null, null, state);
+         }
+         try {
+            PureLoadResult result = parser.parse(file, path, state);
+            if (failFast && !result.getJunitReport().isSuccess()) {
+               stopped.set(true);
+            }
+            return new Outcome(path, result, null, state);
+         }
+         catch (ParseException e) {
+            LOGGER.fine("Failed to parse result directory: " + path);
+            return new Outcome(path, null, e, state);
+         }
+      }
+   }
+
+   /** Used to pass IOException through fork-join tasks. */
+   private static class UncheckedIOException extends RuntimeException {
+      UncheckedIOException(IOException cause) {
+         super(cause);
+      }
+
+      @Override
+      public synchronized IOException getCause() {
+         return (IOException) super.getCause();
+      }
+   }
+}
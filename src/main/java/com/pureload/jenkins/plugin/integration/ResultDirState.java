@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import jenkins.util.VirtualFile;
+
+/**
+ * Size and modification time of the files parsed in a result directory.
+ * Used to detect result directories that are unchanged since they were last parsed.
+ */
+final class ResultDirState implements Serializable {
+   private static final long serialVersionUID = 1L;
+
+   private final long junitLength;
+   private final long junitModified;
+   private final long reportLength;   // 0 if no execution report
+   private final long reportModified; // 0 if no execution report
+
+   private ResultDirState(long junitLength, long junitModified, long reportLength, long reportModified) {
+      this.junitLength = junitLength;
+      this.junitModified = junitModified;
+      this.reportLength = reportLength;
+      this.reportModified = reportModified;
+   }
+
+   /** @return state of files in result directory */
+   static ResultDirState of(VirtualFile resultDir) throws IOException {
+      VirtualFile junitFile = ResultDirParser.junitReportFile(resultDir);
+      VirtualFile reportFile = ResultDirParser.executionReportFile(resultDir);
+      boolean hasReport = reportFile.isFile();
+      return new ResultDirState(junitFile.length(), junitFile.lastModified(),
+                                hasReport ? reportFile.length() : 0, hasReport ? reportFile.lastModified() : 0);
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      }
+      if (!(o instanceof ResultDirState)) {
+         return false;
+      }
+      ResultDirState other = (ResultDirState) o;
+      return (junitLength == other.junitLength) && (junitModified == other.junitModified) &&
+             (reportLength == other.reportLength) && (reportModified == other.reportModified);
+   }
+
+   @Override
+   public int hashCode() {
+      long h = junitLength;
+      h = 31 * h + junitModified;
+      h = 31 * h + reportLength;
+      h = 31 * h + reportModified;
+      return (int) (h ^ (h >>> 32));
+   }
+
+   @Override
+   public String toString() {
+      return "ResultDirState{junit=" + junitLength + '@' + junitModified +
+             ", report=" + reportLength + '@' + reportModified + '}';
+   }
+}
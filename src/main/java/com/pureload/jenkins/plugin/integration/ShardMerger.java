@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.ReportMerger;
+
+/**
+ * Merges results of result directories that are shards of one load test, i.e. results of the same PLC
+ * produced by distributed workers or parallel pipeline branches. The shards are parsed in parallel by
+ * {@link ResultDirScanner}, and merged by {@link ReportMerger} in a single pass over their results.
+ */
+final class ShardMerger {
+
+   private ShardMerger() {
+   }
+
+   /**
+    * @param outcomes parsed (not failed or unchanged) outcomes, in traversal order
+    * @return one outcome per PLC, in order of first shard. A merged outcome has the paths of all shards.
+    */
+   static List<ResultDirScanner.Outcome> merge(List<ResultDirScanner.Outcome> outcomes) {
+      Map<String, List<ResultDirScanner.Outcome>> byPlc = new LinkedHashMap<>();
+      for (ResultDirScanner.Outcome outcome : outcomes) {
+         String plcFileName = outcome.getResult().getJunitReport().getPlcFileName();
+         String key = (plcFileName != null) ? plcFileName : outcome.getPath();
+         List<ResultDirScanner.Outcome> shards = byPlc.get(key);
+         if (shards == null) {
+            shards = new ArrayList<>(1);
+            byPlc.put(key, shards);
+         }
+         shards.add(outcome);
+      }
+
+      List<ResultDirScanner.Outcome> merged = new ArrayList<>(byPlc.size());
+      for (List<ResultDirScanner.Outcome> shards : byPlc.values()) {
+         if (shards.size() == 1) {
+            merged.add(shards.get(0));
+            continue;
+         }
+         List<PureLoadResult> results = new ArrayList<>(shards.size());
+         StringBuilder path = new StringBuilder();
+         for (ResultDirScanner.Outcome shard : shards) {
+            results.add(shard.getResult());
+            if (path.length() > 0) {
+               path.append(", ");
+            }
+            path.append(shard.getPath());
+         }
+         merged.add(ResultDirScanner.Outcome.merged(path.toString(), ReportMerger.mergeResults(results)));
+      }
+      return merged;
+   }
+}
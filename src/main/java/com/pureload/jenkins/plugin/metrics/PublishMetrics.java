@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.metrics;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timing and volume of one publish of PureLoad results.
+ * For each phase, the number of times it was run and the total and max time are recorded. Phases run
+ * in parallel (parsing of result directories) are summed over all threads, so the total time of a phase
+ * may exceed the elapsed time of the publish.
+ * <p>
+ * Metrics are thread safe, and serializable so they can be collected on a build agent.
+ */
+public class PublishMetrics implements Serializable {
+   private static final long serialVersionUID = 1L;
+
+   /** Phase of publish. */
+   public enum Phase {
+      /** Scan of result tree, including parsing when done in parallel with the scan */
+      SCAN("scan"),
+      /** Parsing of one JUnit report file */
+      PARSE("parse"),
+      /** Extraction of total summary from one execution report file */
+      SUMMARY("summary"),
+      /** Parsing of response times from one CSV file */
+      LATENCIES("latencies"),
+      /** Storing of results in build and KPI trend index */
+      PERSIST("persist");
+
+      private final String displayName;
+
+      Phase(String displayName) {
+         this.displayName = displayName;
+      }
+
+      public String getDisplayName() { return displayName; }
+   }
+
+   private static final Phase[] PHASES = Phase.values();
+
+   private final AtomicLongArray counts = new AtomicLongArray(PHASES.length);
+   private final AtomicLongArray totalNanos = new AtomicLongArray(PHASES.length);
+   private final AtomicLongArray maxNanos = new AtomicLongArray(PHASES.length);
+   private final AtomicLong bytesRead = new AtomicLong();
+   private final AtomicLong testCases = new AtomicLong();
+
+   /** @return start time of phase, to pass to {@link #stop} */
+   public static long start() {
+      return System.nanoTime();
+   }
+
+   /** Record that phase was run, from start time (see {@link #start}) until now. */
+   public void stop(Phase phase, long start) {
+      long nanos = System.nanoTime() - start;
+      record(phase, 1, nanos, nanos);
+   }
+
+   public void addBytesRead(long bytes) {
+      bytesRead.addAndGet(bytes);
+   }
+
+   public void addTestCases(long count) {
+      testCases.addAndGet(count);
+   }
+
+   /** Add all metrics of other (e.g. collected on an agent). */
+   public void add(PublishMetrics other) {
+      for (Phase phase : PHASES) {
+         int i = phase.ordinal();
+         record(phase, other.counts.get(i), other.totalNanos.get(i), other.maxNanos.get(i));
+      }
+      bytesRead.addAndGet(other.bytesRead.get());
+      testCases.addAndGet(other.testCases.get());
+   }
+
+   private void record(Phase phase, long count, long nanos, long max) {
+      int i = phase.ordinal();
+      counts.addAndGet(i, count);
+      totalNanos.addAndGet(i, nanos);
+      long current;
+      while ((current = maxNanos.get(i)) < max) {
+         if (maxNanos.compareAndSet(i, current, max)) {
+            break;
+         }
+      }
+   }
+
+   /** @return number of times phase was run */
+   public long getCount(Phase phase) { return counts.get(phase.ordinal()); }
+
+   /** @return total time of phase (ns) */
+   public long getTotalNanos(Phase phase) { return totalNanos.get(phase.ordinal()); }
+
+   /** @return max time of one run of phase (ns) */
+   public long getMaxNanos(Phase phase) { return maxNanos.get(phase.ordinal()); }
+
+   /** @return number of bytes read from report files */
+   public long getBytesRead() { return bytesRead.get(); }
+
+   /** @return number of testcases (KPIs and scenarios) parsed */
+   public long getTestCases() { return testCases.get(); }
+
+   /** @return one line summary, e.g. for the build log */
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder("PureLoad publish:");
+      for (Phase phase : PHASES) {
+         long count = getCount(phase);
+         if (count == 0) {
+            continue;
+         }
+         sb.append(' ').append(phase.getDisplayName()).append(' ')
+           .append(TimeUnit.NANOSECONDS.toMillis(getTotalNanos(phase))).append(" ms");
+         if (count > 1) {
+            sb.append(" (").append(count).append(" x, max ")
+              .append(TimeUnit.NANOSECONDS.toMillis(getMaxNanos(phase))).append(" ms)");
+         }
+         sb.append(',');
+      }
+      sb.append(' ').append(getBytesRead() / 1024).append(" KB read, ").append(getTestCases()).append(" testcases parsed");
+      return sb.toString();
+   }
+}
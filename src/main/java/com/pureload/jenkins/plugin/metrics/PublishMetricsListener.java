@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.metrics;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.Run;
+
+/**
+ * Receives metrics of each publish of PureLoad results.
+ * Implement this to expose the metrics to a monitoring system, e.g. as counters and histograms
+ * using the Jenkins metrics plugin. Listeners are called after results are published, and should not block.
+ * <p>
+ * Listeners are called in the build thread, or, when results are published in the background, in a
+ * worker thread after the build step has returned; the build may then be completed. Listeners should
+ * not depend on the context of the build thread.
+ */
+public abstract class PublishMetricsListener implements ExtensionPoint {
+   private static final Logger LOGGER = Logger.getLogger(PublishMetricsListener.class.getName());
+
+   /** Called when results of run has been published; in the build thread or in a background worker. */
+   public abstract void onPublished(Run<?, ?> run, PublishMetrics metrics);
+
+   /** @return all registered listeners */
+   public static ExtensionList<PublishMetricsListener> all() {
+      return ExtensionList.lookup(PublishMetricsListener.class);
+   }
+
+   /** Pass metrics to all listeners. A failing listener does not affect the build. */
+   public static void fireOnPublished(Run<?, ?> run, PublishMetrics metrics) {
+      for (PublishMetricsListener listener : all()) {
+         try {
+            listener.onPublished(run, metrics);
+         }
+         catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Publish metrics listener failed: " + listener, e);
+         }
+      }
+   }
+}
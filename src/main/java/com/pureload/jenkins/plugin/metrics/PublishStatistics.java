@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.metrics;
+
+import java.text.MessageFormat;
+
+import com.pureload.jenkins.plugin.result.LatencyHistogram;
+import hudson.Extension;
+import hudson.model.Run;
+
+/**
+ * Default publish metrics listener, keeping cumulative counters and a histogram of the time of each phase
+ * for all publishes since the controller was started. Shown on the global configuration page.
+ * <p>
+ * Statistics are kept in memory only. To expose publish metrics to a monitoring system, implement
+ * another {@link PublishMetricsListener}.
+ */
+@Extension
+public class PublishStatistics extends PublishMetricsListener {
+   private static final PublishMetrics.Phase[] PHASES = PublishMetrics.Phase.values();
+
+   private long publishes;
+   private long bytesRead;
+   private long testCases;
+   /** Total time (us) of phase in each publish, by phase */
+   private final LatencyHistogram[] phaseTimes = new LatencyHistogram[PHASES.length];
+
+   public PublishStatistics() {
+      for (int i = 0; i < phaseTimes.length; i++) {
+         phaseTimes[i] = new LatencyHistogram();
+      }
+   }
+
+   /** @return registered instance, or null if not registered */
+   public static PublishStatistics get() {
+      return all().get(PublishStatistics.class);
+   }
+
+   @Override
+   public synchronized void onPublished(Run<?, ?> run, PublishMetrics metrics) {
+      publishes++;
+      bytesRead += metrics.getBytesRead();
+      testCases += metrics.getTestCases();
+      for (PublishMetrics.Phase phase : PHASES) {
+         if (metrics.getCount(phase) > 0) {
+            phaseTimes[phase.ordinal()].record(metrics.getTotalNanos(phase) / 1000);
+         }
+      }
+   }
+
+   /** @return number of publishes */
+   public synchronized long getPublishes() { return publishes; }
+
+   /** @return total number of bytes read from report files */
+   public synchronized long getBytesRead() { return bytesRead; }
+
+   /** @return total number of testcases parsed */
+   public synchronized long getTestCases() { return testCases; }
+
+   /** @return copy of histogram of the total time (us) of phase in each publish where it was run */
+   public synchronized LatencyHistogram getPhaseTimes(PublishMetrics.Phase phase) {
+      return phaseTimes[phase.ordinal()].copy();
+   }
+
+   /** @return summary of statistics, e.g. for the global configuration page */
+   @Override
+   public synchronized String toString() {
+      StringBuilder sb = new StringBuilder(MessageFormat.format("{0} publishes, {1} KB read, {2} testcases parsed.",
+                                                                publishes, bytesRead / 1024, testCases));
+      for (PublishMetrics.Phase phase : PHASES) {
+         LatencyHistogram times = phaseTimes[phase.ordinal()];
+         if (times.getTotalCount() == 0) {
+            continue;
+         }
+         sb.append(' ').append(MessageFormat.format("{0}: median {1} ms, 95% {2} ms, max {3} ms.",
+                                                    phase.getDisplayName(), times.getValueAtPercentile(50) / 1000,
+                                                    times.getValueAtPercentile(95) / 1000, times.getMax() / 1000));
+      }
+      return sb.toString();
+   }
+}
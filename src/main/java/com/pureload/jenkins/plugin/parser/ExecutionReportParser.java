@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import jenkins.util.VirtualFile;
+
+/**
+ * Static utilities to extract the total summary from a PureLoad execution report (report.html).
+ * <p>
+ * The report is scanned as bytes, line by line, looking for ASCII markers. Only the lines
+ * of the summary are decoded (using an explicit charset, which must be ASCII compatible),
+ * and reading stops as soon as both the summary and the summary table are found.
+ */
+public class ExecutionReportParser {
+
+   /** Charset of execution reports. */
+   public static final Charset REPORT_CHARSET = Charset.forName("UTF-8");
+
+   private static final byte[] TOTAL_MARKER = ascii("<h3>Total</h3>");
+   private static final byte[] TABLE_START_MARKER = ascii("<table");
+   private static final byte[] TABLE_END_MARKER = ascii("</table>");
+   private static final int BUFFER_SIZE = 64 * 1024;
+   private static final Logger LOGGER = Logger.getLogger(ExecutionReportParser.class.getName());
+
+   /** Scanner state; what we are looking for */
+   private enum State {
+      FIND_TOTAL,      // "<h3>Total</h3>" line
+      SKIP_LINE,       // "<p>" line following total
+      SUMMARY,         // Summary lines up to "</table>"
+      FIND_TABLE,      // "<table" line
+      TABLE,           // Table lines up to "</table>"
+      DONE
+   }
+
+   /** Add total summary from execution report file, if the file exists. */
+   public static void parseTotalSummary(VirtualFile reportFile, PureLoadResult result) throws IOException {
+      if (reportFile.isFile() && reportFile.canRead()) {
+         try (InputStream is = reportFile.open()) {
+            parseTotalSummary(is, REPORT_CHARSET, result);
+         }
+      }
+   }
+
+   /** Add total summary read from execution report stream. The stream is not closed. */
+   public static void parseTotalSummary(InputStream is, Charset charset, PureLoadResult result) throws IOException {
+      new Scanner(charset, result).scan(is);
+   }
+
+   private static byte[] ascii(String s) {
+      return s.getBytes(Charset.forName("US-ASCII"));
+   }
+
+   /** @return true if bytes [0, length) contains pattern */
+   static boolean contains(byte[] bytes, int length, byte[] pattern) {
+      byte first = pattern[0];
+      int last = length - pattern.length;
+      for (int i = 0; i <= last; i++) {
+         if (bytes[i] == first) {
+            int j = 1;
+            while ((j < pattern.length) && (bytes[i + j] == pattern[j])) {
+               j++;
+            }
+            if (j == pattern.length) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+   private static class Scanner {
+      private final Charset charset;
+      private final PureLoadResult result;
+      private State state = State.FIND_TOTAL;
+      private byte[] line = new byte[1024];
+      private int lineLength;
+      private final Capture capture = new Capture();
+
+      Scanner(Charset charset, PureLoadResult result) {
+         this.charset = charset;
+         this.result = result;
+      }
+
+      void scan(InputStream is) throws IOException {
+         byte[] buf = new byte[BUFFER_SIZE];
+         int n;
+         while ((n = is.read(buf)) > 0) {
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+               if (buf[i] == '\n') {
+                  appendLine(buf, start, i - start);
+                  if (!endOfLine()) {
+                     return; // All found
+                  }
+                  start = i + 1;
+               }
+            }
+            appendLine(buf, start, n - start);
+         }
+         if (lineLength > 0) {
+            endOfLine();
+         }
+         if (state == State.FIND_TOTAL) {
+            LOGGER.fine("Total summary not found in execution report");
+         }
+         else if (state == State.FIND_TABLE) {
+            LOGGER.fine("Total summary table not found in execution report");
+         }
+      }
+
+      private void appendLine(byte[] buf, int start, int length) {
+         if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+         }
+         System.arraycopy(buf, start, line, lineLength, length);
+         lineLength += length;
+      }
+
+      /** Process line. @return false if done */
+      private boolean endOfLine() {
+         if ((lineLength > 0) && (line[lineLength - 1] == '\r')) {
+            lineLength--;
+         }
+         switch (state) {
+            case FIND_TOTAL:
+               if (contains(line, lineLength, TOTAL_MARKER)) {
+                  state = State.SKIP_LINE;
+               }
+               break;
+            case SKIP_LINE:
+               capture.reset();
+               state = State.SUMMARY;
+               break;
+            case SUMMARY:
+               capture.appendLine(line, lineLength);
+               if (contains(line, lineLength, TABLE_END_MARKER)) {
+                  result.setTotalSummaryHtml(capture.decode(charset));
+                  state = State.FIND_TABLE;
+               }
+               break;
+            case FIND_TABLE:
+               if (contains(line, lineLength, TABLE_START_MARKER)) {
+                  // Note: the table start line is not terminated
+                  capture.reset();
+                  capture.append(line, lineLength);
+                  state = State.TABLE;
+               }
+               break;
+            case TABLE:
+               capture.appendLine(line, lineLength);
+               if (contains(line, lineLength, TABLE_END_MARKER)) {
+                  result.setTotalSummaryTableHtml(capture.decode(charset));
+                  state = State.DONE;
+               }
+               break;
+            default:
+               break;
+         }
+         lineLength = 0;
+         return state != State.DONE;
+      }
+   }
+
+   /** Growable byte buffer of captured lines. */
+   private static class Capture {
+      private byte[] bytes = new byte[4096];
+      private int length;
+
+      void reset() {
+         length = 0;
+      }
+
+      void append(byte[] b, int len) {
+         if (length + len + 1 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + len + 1));
+         }
+         System.arraycopy(b, 0, bytes, length, len);
+         length += len;
+      }
+
+      void appendLine(byte[] b, int len) {
+         append(b, len);
+         bytes[length++] = '\n';
+      }
+
+      String decode(Charset charset) {
+         return new String(bytes, 0, length, charset);
+      }
+   }
+}
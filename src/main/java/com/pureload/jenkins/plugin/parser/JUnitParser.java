@@ -7,20 +7,17 @@ package com.pureload.jenkins.plugin.parser;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.text.DateFormat;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import com.pureload.jenkins.plugin.result.JUnitReport;
-import com.pureload.jenkins.plugin.result.TestCaseResult;
 import hudson.FilePath;
 import jenkins.util.VirtualFile;
-import org.apache.commons.lang.StringUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
@@ -29,47 +26,106 @@ import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Static utilities to parse JUnit XML file.
+ * The utilities are thread safe; SAX parsers are pooled and reset before being reused.
+ * The parser backend (SAX or StAX) may be selected per call, or by default using the
+ * system property <code>com.pureload.jenkins.plugin.parser.JUnitParser.backend</code>.
  */
 public class JUnitParser {
 
-   private static final DateFormat ISO_8601_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+   private static final Logger LOGGER = Logger.getLogger(JUnitParser.class.getName());
+
+   /** Max number of idle SAX parsers kept for reuse. */
+   private static final int MAX_POOLED_PARSERS = 16;
+
+   /** Parser backend. */
+   public enum Backend {
+      /** SAX parser (push) */
+      SAX,
+      /** StAX parser (pull); skips content that is not needed */
+      STAX
+   }
+
+   /** Backend used if not specified, may be set using system property. */
+   private static final Backend DEFAULT_BACKEND = defaultBackend();
+
+   private static final SAXParserFactory PARSER_FACTORY = newParserFactory();
+   private static final BlockingQueue<SAXParser> PARSER_POOL = new ArrayBlockingQueue<>(MAX_POOLED_PARSERS);
 
    static public JUnitReport parse(VirtualFile file) throws ParseException {
-      return doParse(file);
+      return doParse(file, DEFAULT_BACKEND, null);
+   }
+
+   static public JUnitReport parse(VirtualFile file, Backend backend) throws ParseException {
+      return doParse(file, backend, null);
+   }
+
+   /**
+    * Parse report, passing each KPI result to listener as soon as it is parsed.
+    * If the listener stops parsing, the report is marked as truncated.
+    */
+   static public JUnitReport parse(VirtualFile file, KpiListener kpiListener) throws ParseException {
+      return doParse(file, DEFAULT_BACKEND, kpiListener);
+   }
+
+   /**
+    * Parse report read from stream, passing each KPI result to listener (if any).
+    * The stream is closed.
+    */
+   static public JUnitReport parse(String fileName, InputStream is, KpiListener kpiListener) throws ParseException {
+      return doParse(fileName, is, DEFAULT_BACKEND, kpiListener);
    }
 
    static public JUnitReport parse(File file) throws ParseException {
-      return doParse(new FilePath(file));
+      return doParse(new FilePath(file), DEFAULT_BACKEND, null);
+   }
+
+   static public JUnitReport parse(File file, Backend backend) throws ParseException {
+      return doParse(new FilePath(file), backend, null);
+   }
+
+   static public JUnitReport parse(File file, Backend backend, KpiListener kpiListener) throws ParseException {
+      return doParse(new FilePath(file), backend, kpiListener);
    }
 
-   static private JUnitReport doParse(VirtualFile file) throws ParseException {
+   static private JUnitReport doParse(VirtualFile file, Backend backend, KpiListener kpiListener)
+       throws ParseException
+   {
       try {
-         return doParse(file.getName(), file.open());
+         return doParse(file.getName(), file.open(), backend, kpiListener);
       }
       catch (IOException e) {
          throw new ParseException("Can not parse: '" + file.getName() + "': " + e, e);
       }
    }
 
-   private static JUnitReport doParse(FilePath file) throws ParseException {
+   private static JUnitReport doParse(FilePath file, Backend backend, KpiListener kpiListener)
+       throws ParseException
+   {
       try {
-         return doParse(file.getName(), file.read());
+         return doParse(file.getName(), file.read(), backend, kpiListener);
       }
       catch (IOException | InterruptedException e) {
          throw new ParseException("Can not parse: '" + file.getName() + "': " + e, e);
       }
    }
 
-   static private JUnitReport doParse(String fileName, InputStream is) throws ParseException {
+   static private JUnitReport doParse(String fileName, InputStream is, Backend backend, KpiListener kpiListener)
+       throws ParseException
+   {
+      if (backend == Backend.STAX) {
+         return doParseStax(fileName, is, kpiListener);
+      }
+      SAXParser parser = null;
+      ParserHandler handler = null;
       try {
-         final SAXParserFactory factory = SAXParserFactory.newInstance();
-         factory.setValidating(false);
-         factory.setNamespaceAware(false);
-         final SAXParser parser = factory.newSAXParser();
-         final ParserHandler handler = new ParserHandler(fileName);
+         parser = borrowParser();
+         handler = new ParserHandler(fileName, kpiListener);
          parser.parse(is, handler);
          return handler.getReport();
       }
+      catch (StoppedException e) {
+         return handler.getReport();
+      }
       catch (Exception e) {
          throw new ParseException("Can not parse: '" + fileName + "': " + e, e);
       }
@@ -78,23 +134,81 @@ public class JUnitParser {
             is.close();
          }
          catch (IOException ignore) {}
+         if (parser != null) {
+            returnParser(parser);
+         }
       }
    }
 
-   private static class ParserHandler extends DefaultHandler {
-      // Regex pattern to find KPI details from system-out element.
-      static final Pattern KPI_STDOUT_PATTERN = Pattern.compile("(?s)threshold=([^}]+).*timestamp=(\\d+).*value=([^,]+).*status=([^,]+)");
+   static private JUnitReport doParseStax(String fileName, InputStream is, KpiListener kpiListener)
+       throws ParseException
+   {
+      try {
+         return StaxReportParser.parse(fileName, is, kpiListener);
+      }
+      catch (Exception e) {
+         throw new ParseException("Can not parse: '" + fileName + "': " + e, e);
+      }
+      finally {
+         try {
+            is.close();
+         }
+         catch (IOException ignore) {}
+      }
+   }
 
-      private final JUnitReport report;
+   private static Backend defaultBackend() {
+      String name = System.getProperty(JUnitParser.class.getName() + ".backend");
+      if (name != null) {
+         try {
+            return Backend.valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+         }
+         catch (IllegalArgumentException e) {
+            LOGGER.warning("Unknown JUnit parser backend: " + name);
+         }
+      }
+      return Backend.SAX;
+   }
+
+   private static SAXParserFactory newParserFactory() {
+      final SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setValidating(false);
+      factory.setNamespaceAware(false);
+      return factory;
+   }
+
+   private static SAXParser borrowParser() throws ParserConfigurationException, SAXException {
+      SAXParser parser = PARSER_POOL.poll();
+      if (parser == null) {
+         // Factory is not guaranteed to be thread safe.
+         synchronized (PARSER_FACTORY) {
+            parser = PARSER_FACTORY.newSAXParser();
+         }
+      }
+      return parser;
+   }
+
+   private static void returnParser(SAXParser parser) {
+      try {
+         parser.reset();
+      }
+      catch (UnsupportedOperationException e) {
+         return; // Can not be reused
+      }
+      PARSER_POOL.offer(parser); // Dropped if pool is full
+   }
+
+   /** SAX handler, passing events to report builder. */
+   private static class ParserHandler extends DefaultHandler {
+      private final ReportBuilder builder;
       private Locator locator;
-      private StringBuilder eltCharacters;
+      private boolean captureCharacters;
 
-      ParserHandler(String fileName) {
-         this.report = new JUnitReport(fileName);
-         eltCharacters = new StringBuilder();
+      ParserHandler(String fileName, KpiListener kpiListener) {
+         this.builder = new ReportBuilder(fileName, kpiListener);
       }
 
-      JUnitReport getReport() { return report; }
+      JUnitReport getReport() { return builder.getReport(); }
 
       /** Called when XML-parser starts reading XML document */
       @Override
@@ -107,122 +221,73 @@ public class JUnitParser {
       public void startElement(String uri, String localName, String qName, Attributes attributes)
           throws SAXException
       {
-         eltCharacters.setLength(0);
-
-         if ("testsuite".equalsIgnoreCase(qName)) {
-            String name = attributes.getValue("name");
-            report.setPlcFileName(name);
-            String timeStr = attributes.getValue("timestamp");
-            try {
-               Date date = ISO_8601_DATE_FORMAT.parse(timeStr);
-               report.setDate(date);
-            }
-            catch (java.text.ParseException e) {
-               throw new SAXParseException("Can not parse timestamp attribute", locator);
-            }
-            timeStr = attributes.getValue("time");
-            try {
-               report.setExecTime(parseTime(timeStr));
-            }
-            catch (java.text.ParseException e) {
-               throw new SAXParseException("Can not parse time attribute", locator);
-            }
-         }
-         else if ("testcase".equalsIgnoreCase(qName)) {
-            String classname = attributes.getValue("classname");
-            TestCaseResult.Type type = classname.startsWith("KPI.") ?
-                                       TestCaseResult.Type.KPI : TestCaseResult.Type.Scenario;
-            String name = attributes.getValue("name");
-            String time = attributes.getValue("time");
-            String status = attributes.getValue("status");
-            TestCaseResult result = report.getCurrent();
-            if (result != null) {
-               // We have a new testcase; add current
-               report.addCurrent();
-            }
-            else {
-               // Create new result
-               result = new TestCaseResult(name, type);
-               if (type == TestCaseResult.Type.Scenario) {
-                  // Scenario result; parse time
-                  try {
-                     result.setExecTime(parseTime(time) / 1000.0f);
-                  }
-                  catch (java.text.ParseException e) {
-                     throw new SAXParseException("Can not parse time attribute", locator);
+         captureCharacters = false;
+         try {
+            switch (ReportBuilder.Element.of(qName)) {
+               case TESTSUITE:
+                  builder.startTestSuite(attributes.getValue("name"), attributes.getValue("timestamp"),
+                                         attributes.getValue("time"));
+                  break;
+               case TESTCASE:
+                  builder.startTestCase(attributes.getValue("classname"), attributes.getValue("name"),
+                                        attributes.getValue("time"), attributes.getValue("status"));
+                  if (builder.isStopped()) {
+                     throw new StoppedException();
                   }
-               }
-               result.setOk(status.equalsIgnoreCase("Ok"));
-               report.setCurrent(result);
+                  break;
+               case FAILURE:
+                  builder.failure(attributes.getValue("message"));
+                  break;
+               case ERROR:
+                  builder.failure("");
+                  break;
+               case SYSTEM_OUT:
+                  captureCharacters = builder.startSystemOut();
+                  break;
+               default:
+                  break;
             }
          }
-         else if ("failure".equalsIgnoreCase(qName)) {
-            String message = attributes.getValue("message");
-            currentScenarioFailed(message);
-         }
-         else if ("error".equalsIgnoreCase(qName)) {
-            currentScenarioFailed("");
+         catch (java.text.ParseException e) {
+            throw new SAXParseException(e.getMessage(), locator);
          }
       }
 
       /** Called at end of an element */
       @Override
-      public void endElement(String uri, String localName, String qName) {
-         if (("testsuite".equalsIgnoreCase(qName) || "testcase".equalsIgnoreCase(qName))) {
-            TestCaseResult result = report.getCurrent();
-            if (result != null) {
-               // Done; add current
-               report.addCurrent();
-            }
-         }
-         else if ("system-out".equalsIgnoreCase(qName)) {
-            TestCaseResult result = report.getCurrent();
-            if ((result != null) && (result.getType() == TestCaseResult.Type.KPI) && (eltCharacters.length() > 0))
-            {
-               // For a KPI result that is OK, we parse system-out to show additional details as a message.
-               parseKpiSystemOut(eltCharacters, result);
-            }
+      public void endElement(String uri, String localName, String qName) throws SAXException {
+         switch (ReportBuilder.Element.of(qName)) {
+            case TESTSUITE:
+            case TESTCASE:
+               builder.endTestCase();
+               if (builder.isStopped()) {
+                  throw new StoppedException();
+               }
+               break;
+            case SYSTEM_OUT:
+               builder.endSystemOut();
+               break;
+            default:
+               break;
          }
-
-         eltCharacters.setLength(0);
+         captureCharacters = false;
       }
 
       @Override
       public void characters(char[] ch, int start, int length) {
-         // Store element characters for possible parsing.
-         eltCharacters.append(new String(ch, start, length));
-      }
-
-      private void currentScenarioFailed(String msg) {
-         TestCaseResult result = report.getCurrent();
-         if (result != null) {
-            result.setOk(false);
-            result.setKpiMessage(msg);
-         }
-      }
-
-      private static long parseTime(final String time) throws java.text.ParseException {
-         if (StringUtils.isEmpty(time)) {
-            return 0;
-         }
-         else {
-            NumberFormat numberFormat = NumberFormat.getNumberInstance();
-            Number number = numberFormat.parse(time);
-            return (long) number.floatValue();
+         if (captureCharacters) {
+            // Store element characters for parsing.
+            captureCharacters = builder.systemOutCharacters(ch, start, length);
          }
       }
+   }
 
-      /** Parse system-out element of KPI to extract and update result with KPI specific information. */
-      private static void parseKpiSystemOut(CharSequence systemOut, TestCaseResult result) {
-         Matcher m = KPI_STDOUT_PATTERN.matcher(systemOut);
-         if (!m.find()) {
-            return; // Ignore unknown systemOut data.
-         }
+   /** Thrown by SAX handler to stop parsing, when stopped by KPI listener. */
+   private static class StoppedException extends SAXException {
+      private static final long serialVersionUID = 1L;
 
-         result.setKpiValue(m.group(3));
-         result.setKpiThreshold(m.group(1));
-         result.setKpiStatus(m.group(4));
-         result.setKpiTimestamp(Long.parseLong(m.group(2)));
+      StoppedException() {
+         super("Stopped by KPI listener");
       }
    }
 }
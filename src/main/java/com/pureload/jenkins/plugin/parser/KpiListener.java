@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.parser;
+
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+
+/**
+ * Receives KPI results (verdicts) while a JUnit report is parsed.
+ */
+public interface KpiListener {
+
+   /** Stops parsing at the first failed KPI. */
+   KpiListener STOP_ON_BREACH = new KpiListener() {
+      @Override
+      public boolean kpiParsed(TestCaseResult kpi) {
+         return kpi.isOk();
+      }
+   };
+
+   /**
+    * Called when a KPI result is complete.
+    * @return false to stop parsing; the report will only include results parsed so far
+    */
+   boolean kpiParsed(TestCaseResult kpi);
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.pureload.jenkins.plugin.result.LatencyHistogram;
+import com.pureload.jenkins.plugin.result.LatencyTimeSeries;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Parses response times from a CSV file into one {@link LatencyHistogram} per scenario, and (if there is
+ * a timestamp column) one {@link LatencyTimeSeries} per scenario.
+ * <p>
+ * Each line holds one sample; the scenario (or task) name, the response time in milliseconds and optionally
+ * the time of the sample (ms since epoch) are read from the configured columns, given by header name (case
+ * insensitive) or by number (starting at 1).
+ * The separator (comma, semicolon or tab) is detected from the first line. Lines that can not be parsed
+ * (e.g. the header) are skipped.
+ * <p>
+ * The file is streamed, and memory is bounded by the number of scenarios: samples of scenarios beyond
+ * {@link #MAX_SCENARIOS} are ignored.
+ */
+public class LatencyCsvParser implements Serializable {
+   private static final long serialVersionUID = 1L;
+
+   /** Default columns: name column, time column (and no timestamp column). */
+   public static final String DEFAULT_COLUMNS = "scenario,time";
+   /** Max number of scenarios (histograms) per file. */
+   public static final int MAX_SCENARIOS = Integer.getInteger(LatencyCsvParser.class.getName() + ".maxScenarios", 1000);
+
+   private static final Charset CHARSET = Charset.forName("UTF-8");
+   private static final Logger LOGGER = Logger.getLogger(LatencyCsvParser.class.getName());
+
+   private final String path;
+   private final String nameColumn;
+   private final String timeColumn;
+   private final String timestampColumn; // null if none
+
+   private LatencyCsvParser(String path, String nameColumn, String timeColumn, String timestampColumn) {
+      this.path = path;
+      this.nameColumn = nameColumn;
+      this.timeColumn = timeColumn;
+      this.timestampColumn = timestampColumn;
+   }
+
+   /**
+    * @param path path of CSV file, relative to result directory
+    * @param columns name, time and (optionally) timestamp column, separated by comma
+    *                (null for {@link #DEFAULT_COLUMNS})
+    * @throws IllegalArgumentException if columns are not valid
+    */
+   public static LatencyCsvParser of(String path, String columns) {
+      String[] names = StringUtils.isBlank(columns) ? DEFAULT_COLUMNS.split(",") : columns.split(",", -1);
+      if ((names.length < 2) || (names.length > 3)) {
+         throw new IllegalArgumentException("Expected name, time and optional timestamp column, e.g. '" +
+                                            DEFAULT_COLUMNS + ",timestamp'");
+      }
+      for (int i = 0; i < names.length; i++) {
+         names[i] = names[i].trim();
+         if (names[i].isEmpty()) {
+            throw new IllegalArgumentException("Empty column: " + (i + 1));
+         }
+         if (isNumber(names[i]) && (Integer.parseInt(names[i]) < 1)) {
+            throw new IllegalArgumentException("Column numbers start at 1: " + names[i]);
+         }
+      }
+      return new LatencyCsvParser(path, names[0], names[1], (names.length > 2) ? names[2] : null);
+   }
+
+   /** @return path of CSV file, relative to result directory */
+   public String getPath() { return path; }
+
+   /**
+    * Parse samples from stream, and set response times (and time series) of result. The stream is not closed.
+    */
+   public void parse(InputStream is, PureLoadResult result) throws IOException {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(is, CHARSET));
+      Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+      Map<String, LatencyTimeSeries> timeSeries = new LinkedHashMap<>();
+      String line = reader.readLine();
+      if (line == null) {
+         return;
+      }
+      char separator = separatorOf(line);
+      int nameIndex = columnIndex(nameColumn, line, separator);
+      int timeIndex = columnIndex(timeColumn, line, separator);
+      int timestampIndex = (timestampColumn != null) ? columnIndex(timestampColumn, line, separator) : -1;
+      if ((nameIndex < 0) || (timeIndex < 0) || ((timestampColumn != null) && (timestampIndex < 0))) {
+         throw new IOException("Columns '" + nameColumn + "', '" + timeColumn + "'" +
+                               ((timestampColumn != null) ? ", '" + timestampColumn + "'" : "") +
+                               " not found in: " + path);
+      }
+      long start = -1; // Time of first sample; start of all series
+      long ignored = 0;
+      for (; line != null; line = reader.readLine()) {
+         String name = field(line, separator, nameIndex);
+         long micros = parseMicros(field(line, separator, timeIndex));
+         long timestamp = (timestampIndex >= 0) ? parseTimestamp(field(line, separator, timestampIndex)) : -1;
+         if ((name == null) || name.isEmpty() || (micros < 0) || ((timestampIndex >= 0) && (timestamp < 0))) {
+            continue; // Header, blank line etc
+         }
+         LatencyHistogram histogram = histograms.get(name);
+         if (histogram == null) {
+            if (histograms.size() >= MAX_SCENARIOS) {
+               ignored++;
+               continue;
+            }
+            histogram = new LatencyHistogram();
+            histograms.put(name, histogram);
+         }
+         histogram.record(micros);
+         if (timestampIndex >= 0) {
+            if (start < 0) {
+               start = timestamp;
+            }
+            LatencyTimeSeries series = timeSeries.get(name);
+            if (series == null) {
+               series = new LatencyTimeSeries(start);
+               timeSeries.put(name, series);
+            }
+            series.record(timestamp, micros);
+         }
+      }
+      if (ignored > 0) {
+         LOGGER.warning("Too many scenarios in " + path + "; ignored " + ignored + " samples");
+      }
+      result.setLatencies(histograms);
+      result.setTimeSeries(timeSeries);
+   }
+
+   private static char separatorOf(String line) {
+      for (char c : new char[] {'\t', ';', ','}) {
+         if (line.indexOf(c) >= 0) {
+            return c;
+         }
+      }
+      return ',';
+   }
+
+   /** @return index (from 0) of column, by number or name in header line; -1 if not found */
+   private static int columnIndex(String column, String header, char separator) {
+      if (isNumber(column)) {
+         return Integer.parseInt(column) - 1;
+      }
+      for (int i = 0; ; i++) {
+         String name = field(header, separator, i);
+         if (name == null) {
+            return -1;
+         }
+         if (name.equalsIgnoreCase(column)) {
+            return i;
+         }
+      }
+   }
+
+   /** @return field (trimmed, without surrounding quotes) with index in line, or null if no such field */
+   private static String field(String line, char separator, int index) {
+      int start = 0;
+      for (int i = 0; i < index; i++) {
+         start = line.indexOf(separator, start);
+         if (start < 0) {
+            return null;
+         }
+         start++;
+      }
+      int end = line.indexOf(separator, start);
+      if (end < 0) {
+         end = line.length();
+      }
+      while ((start < end) && Character.isWhitespace(line.charAt(start))) {
+         start++;
+      }
+      while ((end > start) && Character.isWhitespace(line.charAt(end - 1))) {
+         end--;
+      }
+      if ((end - start >= 2) && (line.charAt(start) == '"') && (line.charAt(end - 1) == '"')) {
+         start++;
+         end--;
+      }
+      return line.substring(start, end);
+   }
+
+   /** @return time in milliseconds converted to microseconds, or -1 if not a valid time */
+   private static long parseMicros(String time) {
+      if ((time == null) || time.isEmpty()) {
+         return -1;
+      }
+      try {
+         double ms = Double.parseDouble(time);
+         return ((ms >= 0) && !Double.isInfinite(ms)) ? Math.round(ms * 1000) : -1;
+      }
+      catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   /** @return timestamp (ms), or -1 if not a valid timestamp */
+   private static long parseTimestamp(String timestamp) {
+      if ((timestamp == null) || !isDigits(timestamp)) {
+         return -1;
+      }
+      try {
+         return Long.parseLong(timestamp);
+      }
+      catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   private static boolean isNumber(String s) {
+      return (s.length() <= 9) && isDigits(s);
+   }
+
+   private static boolean isDigits(String s) {
+      if (s.isEmpty()) {
+         return false;
+      }
+      for (int i = 0; i < s.length(); i++) {
+         if ((s.charAt(i) < '0') || (s.charAt(i) > '9')) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /** @return configuration, used as part of cache keys */
+   @Override
+   public String toString() {
+      return "LatencyCsvParser{" + path + ':' + nameColumn + ',' + timeColumn +
+             ((timestampColumn != null) ? ',' + timestampColumn : "") + '}';
+   }
+}
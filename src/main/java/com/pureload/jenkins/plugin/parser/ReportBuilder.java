@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.parser;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.ReportMerger;
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Builds a JUnit report from XML parser events.
+ * This is shared by the parser backends, so that all backends produce identical reports.
+ * Invalid attribute values are signalled using java.text.ParseException, that the backend
+ * converts to its own exception including document location.
+ * <p>
+ * A report may contain several test suites (e.g. from distributed workers). Each suite is built as a
+ * report of its own, and the suites are merged by {@link ReportMerger} when the report is complete.
+ */
+class ReportBuilder {
+
+   /** Max number of characters of KPI system-out that are captured. */
+   static final int MAX_SYSTEM_OUT_LENGTH = 16 * 1024;
+
+   private static final ThreadLocal<DateFormat> ISO_8601_DATE_FORMAT = new ThreadLocal<DateFormat>() {
+      @Override
+      protected DateFormat initialValue() {
+         return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+      }
+   };
+
+   /** Elements handled by parser. */
+   enum Element {
+      TESTSUITE("testsuite"),
+      TESTCASE("testcase"),
+      FAILURE("failure"),
+      ERROR("error"),
+      SYSTEM_OUT("system-out"),
+      OTHER(null);
+
+      private static final Element[] ELEMENTS = values();
+      private static final Map<String, Element> BY_NAME = new HashMap<>();
+      static {
+         for (Element element : ELEMENTS) {
+            if (element.name != null) {
+               BY_NAME.put(element.name, element);
+            }
+         }
+      }
+
+      private final String name;
+
+      Element(String name) {
+         this.name = name;
+      }
+
+      /** @return element with given name (ignoring case). */
+      static Element of(String qName) {
+         Element element = BY_NAME.get(qName);
+         if (element != null) {
+            return element;
+         }
+         // Unknown element, or not in lower case.
+         for (Element e : ELEMENTS) {
+            if ((e.name != null) && e.name.equalsIgnoreCase(qName)) {
+               return e;
+            }
+         }
+         return OTHER;
+      }
+   }
+
+   private final String fileName;
+   private final KpiListener kpiListener;
+   private final List<JUnitReport> suites = new ArrayList<>(1); // Completed suites, if several
+   private final StringBuilder systemOut = new StringBuilder();
+   private JUnitReport report; // Report of current suite
+   private boolean suiteStarted;
+   private boolean stopped;
+
+   ReportBuilder(String fileName, KpiListener kpiListener) {
+      this.fileName = fileName;
+      this.report = new JUnitReport(fileName);
+      this.kpiListener = kpiListener;
+   }
+
+   /** @return true if KPI listener stopped parsing */
+   boolean isStopped() { return stopped; }
+
+   /** @return report, completed with the results parsed so far */
+   JUnitReport getReport() {
+      report.setTruncated(stopped);
+      if (suites.isEmpty()) {
+         report.complete();
+         return report;
+      }
+      List<JUnitReport> all = new ArrayList<>(suites);
+      all.add(report);
+      return ReportMerger.merge(fileName, all);
+   }
+
+   void startTestSuite(String name, String timestamp, String time) throws java.text.ParseException {
+      if (suiteStarted) {
+         // Another suite in same report
+         if (report.getCurrent() != null) {
+            addCurrent();
+         }
+         report.complete();
+         suites.add(report);
+         report = new JUnitReport(fileName);
+      }
+      suiteStarted = true;
+      report.setPlcFileName(name);
+      try {
+         Date date = ISO_8601_DATE_FORMAT.get().parse(timestamp);
+         report.setDate(date);
+      }
+      catch (java.text.ParseException e) {
+         throw new java.text.ParseException("Can not parse timestamp attribute", e.getErrorOffset());
+      }
+      report.setExecTime(parseTime(time));
+   }
+
+   void startTestCase(String classname, String name, String time, String status)
+       throws java.text.ParseException
+   {
+      TestCaseResult.Type type = classname.startsWith("KPI.") ?
+                                 TestCaseResult.Type.KPI : TestCaseResult.Type.Scenario;
+      TestCaseResult result = report.getCurrent();
+      if (result != null) {
+         // We have a new testcase; add current
+         addCurrent();
+      }
+      else {
+         // Create new result
+         result = new TestCaseResult(name, type);
+         if (type == TestCaseResult.Type.Scenario) {
+            // Scenario result; parse time
+            result.setExecTime(parseTime(time) / 1000.0f);
+         }
+         result.setOk(status.equalsIgnoreCase("Ok"));
+         report.setCurrent(result);
+      }
+   }
+
+   /** Called at end of testsuite or testcase. */
+   void endTestCase() {
+      if (report.getCurrent() != null) {
+         // Done; add current
+         addCurrent();
+      }
+   }
+
+   private void addCurrent() {
+      TestCaseResult result = report.getCurrent();
+      report.addCurrent();
+      if ((kpiListener != null) && (result.getType() == TestCaseResult.Type.KPI) && !kpiListener.kpiParsed(result)) {
+         stopped = true;
+      }
+   }
+
+   void failure(String msg) {
+      TestCaseResult result = report.getCurrent();
+      if (result != null) {
+         result.setOk(false);
+         result.setKpiMessage(msg);
+      }
+   }
+
+   /**
+    * Called at start of system-out.
+    * @return true if system-out characters are needed, i.e. if this is the system-out of a KPI result.
+    */
+   boolean startSystemOut() {
+      systemOut.setLength(0);
+      TestCaseResult result = report.getCurrent();
+      return (result != null) && (result.getType() == TestCaseResult.Type.KPI);
+   }
+
+   /**
+    * Add characters of system-out.
+    * @return false if no more characters are needed
+    */
+   boolean systemOutCharacters(char[] ch, int start, int length) {
+      int n = Math.min(length, MAX_SYSTEM_OUT_LENGTH - systemOut.length());
+      systemOut.append(ch, start, n);
+      return systemOut.length() < MAX_SYSTEM_OUT_LENGTH;
+   }
+
+   void endSystemOut() {
+      TestCaseResult result = report.getCurrent();
+      if ((result != null) && (result.getType() == TestCaseResult.Type.KPI) && (systemOut.length() > 0)) {
+         // For a KPI result that is OK, we parse system-out to show additional details as a message.
+         parseKpiSystemOut(systemOut, result);
+      }
+      systemOut.setLength(0);
+   }
+
+   /**
+    * Parse time attribute. Like a number format, leading digits are parsed, grouping separators
+    * (<code>1,234</code>) are skipped, and the fraction (if any) is truncated.
+    */
+   static long parseTime(final String time) throws java.text.ParseException {
+      if (StringUtils.isEmpty(time)) {
+         return 0;
+      }
+      int i = 0;
+      boolean negative = false;
+      if ((time.charAt(0) == '-') || (time.charAt(0) == '+')) {
+         negative = time.charAt(0) == '-';
+         i++;
+      }
+      long value = 0;
+      int start = i;
+      for (; i < time.length(); i++) {
+         char c = time.charAt(i);
+         if ((c == ',') && (i > start) && (i + 1 < time.length()) && isDigit(time.charAt(i + 1))) {
+            continue; // Grouping separator
+         }
+         if (!isDigit(c)) {
+            break;
+         }
+         value = value * 10 + (c - '0');
+      }
+      if ((i == start) && !((i < time.length()) && (time.charAt(i) == '.'))) {
+         throw new java.text.ParseException("Can not parse time attribute", i);
+      }
+      return negative ? -value : value;
+   }
+
+   private static boolean isDigit(char c) {
+      return (c >= '0') && (c <= '9');
+   }
+
+   /**
+    * Parse system-out element of KPI to extract and update result with KPI specific information.
+    * The system-out is expected to contain (in order) threshold, timestamp, value and status
+    * fields, e.g.: <code>KpiResult {kpi=Kpi {... type=Summary, ... metric='Average', threshold=25/105/20},
+    * timestamp=1544448264144, value=108.213, status=High, ...}</code>. The type and metric fields are
+    * optional. Unknown data is ignored.
+    * <p>
+    * Each field is the first occurrence of its key after the previous field, so text following the fields
+    * (e.g. a <code>msg='...'</code> containing <code>value=</code>) does not replace the values of the KPI.
+    */
+   static void parseKpiSystemOut(CharSequence systemOut, TestCaseResult result) {
+      int thresholdStart = indexOfValue(systemOut, "threshold=", 0);
+      int thresholdEnd = indexOf(systemOut, '}', thresholdStart);
+      int timestampStart = indexOfValue(systemOut, "timestamp=", thresholdEnd);
+      int timestampEnd = skipDigits(systemOut, timestampStart);
+      int valueStart = indexOfValue(systemOut, "value=", timestampEnd);
+      int valueEnd = indexOf(systemOut, ',', valueStart);
+      int statusStart = indexOfValue(systemOut, "status=", valueEnd);
+      int statusEnd = indexOf(systemOut, ',', statusStart);
+      if ((thresholdEnd <= thresholdStart) || (timestampEnd <= timestampStart) ||
+          (valueEnd <= valueStart) || (statusEnd <= statusStart))
+      {
+         return; // Ignore unknown systemOut data.
+      }
+
+      long timestamp = 0;
+      for (int i = timestampStart; i < timestampEnd; i++) {
+         timestamp = timestamp * 10 + (systemOut.charAt(i) - '0');
+      }
+      result.setKpiValue(systemOut.subSequence(valueStart, valueEnd).toString());
+      result.setKpiThreshold(systemOut.subSequence(thresholdStart, thresholdEnd).toString());
+      result.setKpiStatus(systemOut.subSequence(statusStart, statusEnd).toString());
+      result.setKpiTimestamp(timestamp);
+
+      int typeStart = indexOfValue(systemOut, "type=", 0);
+      int typeEnd = indexOf(systemOut, ',', typeStart);
+      if ((typeStart >= 0) && (typeEnd < thresholdStart)) {
+         result.setKpiType(systemOut.subSequence(typeStart, typeEnd).toString());
+      }
+      int metricStart = indexOfValue(systemOut, "metric='", 0);
+      int metricEnd = indexOf(systemOut, '\'', metricStart);
+      if ((metricStart >= 0) && (metricEnd < thresholdStart)) {
+         result.setKpiMetric(systemOut.subSequence(metricStart, metricEnd).toString());
+      }
+   }
+
+   /** @return index after key (where value starts), or -1 if not found. */
+   private static int indexOfValue(CharSequence s, String key, int from) {
+      if (from < 0) {
+         return -1;
+      }
+      int last = s.length() - key.length();
+      char first = key.charAt(0);
+      for (int i = from; i <= last; i++) {
+         if (s.charAt(i) == first) {
+            int j = 1;
+            while ((j < key.length()) && (s.charAt(i + j) == key.charAt(j))) {
+               j++;
+            }
+            if (j == key.length()) {
+               return i + j;
+            }
+         }
+      }
+      return -1;
+   }
+
+   /** @return index of char, end of sequence if not found, or -1 if from is -1. */
+   private static int indexOf(CharSequence s, char c, int from) {
+      if (from < 0) {
+         return -1;
+      }
+      int i = from;
+      while ((i < s.length()) && (s.charAt(i) != c)) {
+         i++;
+      }
+      return i;
+   }
+
+   /** @return index of first non digit, or -1 if from is -1. */
+   private static int skipDigits(CharSequence s, int from) {
+      if (from < 0) {
+         return -1;
+      }
+      int i = from;
+      while ((i < s.length()) && (s.charAt(i) >= '0') && (s.charAt(i) <= '9')) {
+         i++;
+      }
+      return i;
+   }
+}
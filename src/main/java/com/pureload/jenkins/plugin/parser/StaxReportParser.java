@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.parser;
+
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.pureload.jenkins.plugin.result.JUnitReport;
+
+/**
+ * JUnit report parser backend using a StAX pull parser.
+ * Text of elements that are not needed is never read, the captured system-out of KPI results
+ * is bounded, and parsing stops at the end of the root element.
+ */
+class StaxReportParser {
+
+   private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+
+   private StaxReportParser() {
+   }
+
+   static JUnitReport parse(String fileName, InputStream is, KpiListener kpiListener) throws XMLStreamException {
+      XMLStreamReader reader;
+      // Factory is not guaranteed to be thread safe.
+      synchronized (INPUT_FACTORY) {
+         reader = INPUT_FACTORY.createXMLStreamReader(is);
+      }
+      try {
+         return parse(new ReportBuilder(fileName, kpiListener), reader);
+      }
+      finally {
+         reader.close();
+      }
+   }
+
+   private static JUnitReport parse(ReportBuilder builder, XMLStreamReader reader) throws XMLStreamException {
+      int depth = 0;
+      boolean captureSystemOut = false;
+      // Stop when done, or when stopped by KPI listener.
+      while (reader.hasNext() && !builder.isStopped()) {
+         switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+               depth++;
+               captureSystemOut = startElement(builder, reader);
+               break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+               if (captureSystemOut) {
+                  captureSystemOut = builder.systemOutCharacters(reader.getTextCharacters(), reader.getTextStart(),
+                                                                 reader.getTextLength());
+               }
+               break;
+            case XMLStreamConstants.END_ELEMENT:
+               depth--;
+               captureSystemOut = false;
+               endElement(builder, reader);
+               if (depth == 0) {
+                  // End of root element; done
+                  return builder.getReport();
+               }
+               break;
+            default:
+               break;
+         }
+      }
+      return builder.getReport();
+   }
+
+   /** @return true if characters of element should be captured */
+   private static boolean startElement(ReportBuilder builder, XMLStreamReader reader) throws XMLStreamException {
+      try {
+         switch (ReportBuilder.Element.of(reader.getLocalName())) {
+            case TESTSUITE:
+               builder.startTestSuite(reader.getAttributeValue(null, "name"),
+                                      reader.getAttributeValue(null, "timestamp"),
+                                      reader.getAttributeValue(null, "time"));
+               return false;
+            case TESTCASE:
+               builder.startTestCase(reader.getAttributeValue(null, "classname"),
+                                     reader.getAttributeValue(null, "name"),
+                                     reader.getAttributeValue(null, "time"),
+                                     reader.getAttributeValue(null, "status"));
+               return false;
+            case FAILURE:
+               builder.failure(reader.getAttributeValue(null, "message"));
+               return false;
+            case ERROR:
+               builder.failure("");
+               return false;
+            case SYSTEM_OUT:
+               return builder.startSystemOut();
+            default:
+               return false;
+         }
+      }
+      catch (java.text.ParseException e) {
+         throw new XMLStreamException(e.getMessage(), reader.getLocation());
+      }
+   }
+
+   private static void endElement(ReportBuilder builder, XMLStreamReader reader) {
+      switch (ReportBuilder.Element.of(reader.getLocalName())) {
+         case TESTSUITE:
+         case TESTCASE:
+            builder.endTestCase();
+            break;
+         case SYSTEM_OUT:
+            builder.endSystemOut();
+            break;
+         default:
+            break;
+      }
+   }
+
+   private static XMLInputFactory newInputFactory() {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+      factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+      factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      return factory;
+   }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.policy;
+
+/**
+ * KPI values of earlier builds, used to evaluate rules relative to history.
+ */
+public interface KpiHistory {
+
+   /** No history. */
+   KpiHistory NONE = new KpiHistory() {
+      @Override
+      public double[] getValues(String plcName, String kpiName, int count) {
+         return new double[0];
+      }
+   };
+
+   /**
+    * @return values (numbers only) of KPI in the last count builds before the current build,
+    *         most recent first; empty if none
+    */
+   double[] getValues(String plcName, String kpiName, int count);
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.policy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+
+/**
+ * Set of KPI rules, compiled once and evaluated over the KPI values of a build.
+ * Rules are written one per line; empty lines and lines starting with <code>#</code> are ignored.
+ * See {@link KpiRule} for the rule syntax.
+ */
+public final class KpiPolicy {
+
+   private final List<KpiRule> rules;
+
+   private KpiPolicy(List<KpiRule> rules) {
+      this.rules = rules;
+   }
+
+   /**
+    * Compile rules.
+    * @throws IllegalArgumentException if a rule is not valid (message includes the line number)
+    */
+   public static KpiPolicy parse(String text) {
+      List<KpiRule> rules = new ArrayList<>();
+      if (text != null) {
+         String[] lines = text.split("\r?\n");
+         for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+               continue;
+            }
+            try {
+               rules.add(KpiRule.parse(line));
+            }
+            catch (IllegalArgumentException e) {
+               throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+         }
+      }
+      return new KpiPolicy(Collections.unmodifiableList(rules));
+   }
+
+   public List<KpiRule> getRules() { return rules; }
+
+   public boolean isEmpty() { return rules.isEmpty(); }
+
+   /**
+    * Evaluate rules for all KPIs of results, in a single pass over the KPIs.
+    * KPIs without a numeric value, and relative rules without history, are skipped.
+    * @return violations, in KPI order
+    */
+   public List<Violation> evaluate(List<PureLoadResult> results, KpiHistory history) {
+      List<Violation> violations = new ArrayList<>();
+      if (rules.isEmpty()) {
+         return violations;
+      }
+      for (PureLoadResult result : results) {
+         JUnitReport report = result.getJunitReport();
+         for (TestCaseResult kpi : report.getKpis()) {
+            double value = kpi.getKpiDoubleValue();
+            if (Double.isNaN(value)) {
+               continue;
+            }
+            for (KpiRule rule : rules) {
+               if (!rule.matches(kpi.getName())) {
+                  continue;
+               }
+               double[] values = rule.isRelative() ?
+                                 history.getValues(report.getPlcFileName(), kpi.getName(), rule.getBuilds()) : null;
+               double limit = rule.limit(values);
+               if (!Double.isNaN(limit) && !rule.test(value, limit)) {
+                  violations.add(new Violation(rule, report.getPlcFileName(), kpi.getName(), value, limit));
+               }
+            }
+         }
+      }
+      return violations;
+   }
+
+   /** KPI value not passing a rule. */
+   public static final class Violation {
+      private final KpiRule rule;
+      private final String plcName;
+      private final String kpiName;
+      private final double value;
+      private final double limit;
+
+      Violation(KpiRule rule, String plcName, String kpiName, double value, double limit) {
+         this.rule = rule;
+         this.plcName = plcName;
+         this.kpiName = kpiName;
+         this.value = value;
+         this.limit = limit;
+      }
+
+      public KpiRule getRule() { return rule; }
+      public String getPlcName() { return plcName; }
+      public String getKpiName() { return kpiName; }
+      public double getValue() { return value; }
+      /** @return limit value was compared to */
+      public double getLimit() { return limit; }
+
+      @Override
+      public String toString() {
+         return "KPI '" + kpiName + "' (" + plcName + ") value " + value + " does not pass rule '" + rule +
+                "' (limit " + limit + ")";
+      }
+   }
+}
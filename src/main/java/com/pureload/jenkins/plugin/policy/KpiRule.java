@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.policy;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled KPI rule, e.g. <code>"TPS*" &gt;= 95% of median(10)</code> or <code>"p95*" &lt; 800</code>.
+ * <p>
+ * Syntax: <code>name operator limit</code>, where
+ * <ul>
+ * <li>name is a KPI name, with <code>*</code> and <code>?</code> wildcards (ignoring case), quoted if it
+ * contains spaces,</li>
+ * <li>operator is one of <code>&lt; &lt;= &gt; &gt;=</code>,</li>
+ * <li>limit is a number, or <code>[P% of] aggregate(N)</code> where aggregate is one of
+ * <code>median mean min max</code> of the KPI values in the last N builds.</li>
+ * </ul>
+ */
+public final class KpiRule {
+
+   /** Comparison operator. */
+   enum Operator {
+      LT("<"), LE("<="), GT(">"), GE(">=");
+
+      private final String symbol;
+
+      Operator(String symbol) {
+         this.symbol = symbol;
+      }
+
+      boolean test(double value, double limit) {
+         switch (this) {
+            case LT:
+               return value < limit;
+            case LE:
+               return value <= limit;
+            case GT:
+               return value > limit;
+            default:
+               return value >= limit;
+         }
+      }
+   }
+
+   /** Aggregate of history. */
+   enum Aggregate {
+      MEDIAN, MEAN, MIN, MAX;
+
+      double of(double[] values) {
+         switch (this) {
+            case MEDIAN:
+               double[] sorted = values.clone();
+               Arrays.sort(sorted);
+               int mid = sorted.length / 2;
+               return ((sorted.length % 2) == 1) ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+            case MEAN:
+               double sum = 0;
+               for (double value : values) {
+                  sum += value;
+               }
+               return sum / values.length;
+            case MIN:
+               double min = Double.POSITIVE_INFINITY;
+               for (double value : values) {
+                  min = Math.min(min, value);
+               }
+               return min;
+            default:
+               double max = Double.NEGATIVE_INFINITY;
+               for (double value : values) {
+                  max = Math.max(max, value);
+               }
+               return max;
+         }
+      }
+   }
+
+   private static final Pattern RULE =
+       Pattern.compile("\\s*(\"[^\"]+\"|[^\\s<>=\"]+)\\s*(<=|>=|<|>)\\s*(.+?)\\s*");
+   private static final Pattern NUMBER = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+   private static final Pattern RELATIVE = Pattern.compile(
+       "(?:(" + NUMBER.pattern() + ")\\s*%\\s*of\\s+)?(median|mean|min|max)\\s*\\(\\s*(\\d+)\\s*\\)",
+       Pattern.CASE_INSENSITIVE);
+
+   private final String text;
+   private final Pattern name;
+   private final Operator operator;
+   private final double limit;          // Static limit, or factor of aggregate
+   private final Aggregate aggregate;   // null for static limit
+   private final int builds;            // Number of builds in history
+
+   private KpiRule(String text, Pattern name, Operator operator, double limit, Aggregate aggregate, int builds) {
+      this.text = text;
+      this.name = name;
+      this.operator = operator;
+      this.limit = limit;
+      this.aggregate = aggregate;
+      this.builds = builds;
+   }
+
+   /**
+    * Compile rule.
+    * @throws IllegalArgumentException if rule is not valid
+    */
+   public static KpiRule parse(String text) {
+      Matcher m = RULE.matcher(text);
+      if (!m.matches()) {
+         throw new IllegalArgumentException("Invalid rule, expected: name operator limit: " + text);
+      }
+      String name = m.group(1);
+      if (name.startsWith("\"")) {
+         name = name.substring(1, name.length() - 1);
+      }
+      Operator operator = null;
+      for (Operator op : Operator.values()) {
+         if (op.symbol.equals(m.group(2))) {
+            operator = op;
+         }
+      }
+      String limit = m.group(3);
+      if (NUMBER.matcher(limit).matches()) {
+         return new KpiRule(text.trim(), compileName(name), operator, Double.parseDouble(limit), null, 0);
+      }
+      Matcher r = RELATIVE.matcher(limit);
+      if (!r.matches()) {
+         throw new IllegalArgumentException("Invalid limit, expected number or [P% of] median|mean|min|max(N): " +
+                                            limit);
+      }
+      double factor = (r.group(1) != null) ? Double.parseDouble(r.group(1)) / 100 : 1;
+      Aggregate aggregate = Aggregate.valueOf(r.group(4).toUpperCase(Locale.ENGLISH));
+      int builds = Integer.parseInt(r.group(5));
+      if (builds <= 0) {
+         throw new IllegalArgumentException("Number of builds must be at least 1: " + limit);
+      }
+      return new KpiRule(text.trim(), compileName(name), operator, factor, aggregate, builds);
+   }
+
+   private static Pattern compileName(String glob) {
+      StringBuilder regex = new StringBuilder();
+      int start = 0;
+      for (int i = 0; i < glob.length(); i++) {
+         char c = glob.charAt(i);
+         if ((c == '*') || (c == '?')) {
+            if (i > start) {
+               regex.append(Pattern.quote(glob.substring(start, i)));
+            }
+            regex.append((c == '*') ? ".*" : ".");
+            start = i + 1;
+         }
+      }
+      if (start < glob.length()) {
+         regex.append(Pattern.quote(glob.substring(start)));
+      }
+      return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+   }
+
+   /** @return rule as written */
+   public String getText() { return text; }
+
+   /** @return true if rule applies to KPI with name */
+   boolean matches(String kpiName) {
+      return name.matcher(kpiName).matches();
+   }
+
+   /** @return true if limit is relative to history */
+   boolean isRelative() { return aggregate != null; }
+
+   /** @return number of builds of history needed (0 for static limit) */
+   int getBuilds() { return builds; }
+
+   /** @return limit, given history values (ignored for static limit), or NaN if no history */
+   double limit(double[] history) {
+      if (aggregate == null) {
+         return limit;
+      }
+      return (history.length > 0) ? limit * aggregate.of(history) : Double.NaN;
+   }
+
+   /** @return true if value passes rule, given limit */
+   boolean test(double value, double limit) {
+      return operator.test(value, limit);
+   }
+
+   @Override
+   public String toString() {
+      return text;
+   }
+}
@@ -4,73 +4,123 @@
 
 package com.pureload.jenkins.plugin.result;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
 /**
  * Describes result from one JUnit XML file.
  * Tis is the result from parsing a JUnit report XML file and includes a list of test case results.
+ * <p>
+ * When all results are added ({@link #complete()}), results are partitioned by type and aggregates
+ * are computed once, so the accessors below do not scan or copy the results.
  */
-public class JUnitReport {
+@ExportedBean(defaultVisibility = 3)
+public class JUnitReport implements Serializable {
+   private static final long serialVersionUID = 1L;
 
    private final String fileName;
    private final List<TestCaseResult> results = new ArrayList<>();
    private String plcFileName;
    private Date date;
    private long execTime; // Execution time (sec)
+   private boolean truncated; // Parsing stopped before end of report?
    private TestCaseResult current;
+   private transient volatile Index index;
 
    public JUnitReport(String fileName) {
       this.fileName = fileName;
    }
 
+   @Exported
    public String getFileName() { return fileName; }
 
    public void setPlcFileName(String plcFileName) { this.plcFileName = plcFileName; }
+   @Exported
    public String getPlcFileName() { return plcFileName; }
 
+   @Exported
    public Date getDate() { return this.date != null ? new Date(this.date.getTime()) : null; }
    public void setDate(Date date) { this.date = new Date(date.getTime()); }
 
+   @Exported
    public long getExecTime() { return execTime; }
    public void setExecTime(long time) { this.execTime = time; }
 
-   public boolean isSuccess() {
-      // Check KPIs
-      for (TestCaseResult result : results) {
-         if (result.getType() == TestCaseResult.Type.KPI) {
-            if (!result.isOk()) {
-               // KPI failed; test failed
-               return false;
-            }
-         }
-      }
-      // If we have KPIs this means that all are ok, and we consider this as success.
-      // If we don not have any defined KPIs we can not decide, so we also treat this
-      // as success.
-      return true;
-   }
+   /** @return true if parsing was stopped (at a failed KPI) before the end of the report */
+   @Exported
+   public boolean isTruncated() { return truncated; }
+   public void setTruncated(boolean truncated) { this.truncated = truncated; }
+
+   /**
+    * @return true unless a KPI failed.
+    * If we have KPIs this means that all are ok, and we consider this as success.
+    * If we don not have any defined KPIs we can not decide, so we also treat this as success.
+    */
+   @Exported
+   public boolean isSuccess() { return index().kpiFailed == 0; }
 
-   public TestCaseResult[] getKpiResults() { return getResults(TestCaseResult.Type.KPI); }
-   public TestCaseResult[] getScenarioResults() { return getResults(TestCaseResult.Type.Scenario); }
+   /** @return all results, in parsed order */
+   public List<TestCaseResult> getResults() { return index().results; }
+
+   /** @return KPI results, in parsed order */
+   @Exported
+   public List<TestCaseResult> getKpis() { return index().kpis; }
+   /** @return scenario results, in parsed order */
+   @Exported
+   public List<TestCaseResult> getScenarios() { return index().scenarios; }
+
+   /** @return copy of KPI results (prefer {@link #getKpis()}) */
+   public TestCaseResult[] getKpiResults() { return index().kpis.toArray(new TestCaseResult[0]); }
+   /** @return copy of scenario results (prefer {@link #getScenarios()}) */
+   public TestCaseResult[] getScenarioResults() { return index().scenarios.toArray(new TestCaseResult[0]); }
+
+   /** @return (first) KPI result with name, or null */
+   public TestCaseResult getKpi(String name) { return index().kpisByName.get(name); }
+   /** @return (first) scenario result with name, or null */
+   public TestCaseResult getScenario(String name) { return index().scenariosByName.get(name); }
+
+   @Exported
+   public int getKpiPassCount() { return index().kpis.size() - index().kpiFailed; }
+   @Exported
+   public int getKpiFailCount() { return index().kpiFailed; }
+   /** @return sum of execution time of all scenarios (sec) */
+   @Exported
+   public double getTotalScenarioTime() { return index().totalScenarioTime; }
+
+   /** Partition results and compute aggregates; called when all results are added. */
+   public void complete() {
+      index = new Index(results);
+   }
 
-   private TestCaseResult[] getResults(TestCaseResult.Type type) {
-      List<TestCaseResult> retResults = new ArrayList<>();
-      for (TestCaseResult result : results) {
-         if (result.getType() == type) {
-            retResults.add(result);
+   private Index index() {
+      Index i = index;
+      if (i == null) {
+         // Results added after complete(), or report read from older build.
+         synchronized (this) {
+            i = index;
+            if (i == null) {
+               i = new Index(results);
+               index = i;
+            }
          }
       }
-      return retResults.toArray(new TestCaseResult[0]);
+      return i;
    }
 
-
    public void setCurrent(TestCaseResult result) { this.current = result; }
    public TestCaseResult getCurrent() { return this.current; }
    public void addCurrent() {
       results.add(current);
       this.current = null;
+      this.index = null;
    }
 
    @Override
@@ -81,4 +131,49 @@ public class JUnitReport {
              ", results=" + results +
              '}';
    }
+
+   /** Immutable views and aggregates of results. */
+   private static final class Index {
+      private final List<TestCaseResult> results;
+      private final List<TestCaseResult> kpis;
+      private final List<TestCaseResult> scenarios;
+      private final Map<String, TestCaseResult> kpisByName = new HashMap<>();
+      private final Map<String, TestCaseResult> scenariosByName = new HashMap<>();
+      private final int kpiFailed;
+      private final double totalScenarioTime;
+
+      Index(List<TestCaseResult> allResults) {
+         List<TestCaseResult> kpiList = new ArrayList<>();
+         List<TestCaseResult> scenarioList = new ArrayList<>();
+         int failed = 0;
+         double time = 0;
+         for (TestCaseResult result : allResults) {
+            if (result.getType() == TestCaseResult.Type.KPI) {
+               kpiList.add(result);
+               putFirst(kpisByName, result);
+               if (!result.isOk()) {
+                  failed++;
+               }
+            }
+            else {
+               scenarioList.add(result);
+               putFirst(scenariosByName, result);
+               if (result.getExecTime() > 0) {
+                  time += result.getExecTime();
+               }
+            }
+         }
+         this.results = Collections.unmodifiableList(allResults);
+         this.kpis = Collections.unmodifiableList(kpiList);
+         this.scenarios = Collections.unmodifiableList(scenarioList);
+         this.kpiFailed = failed;
+         this.totalScenarioTime = time;
+      }
+
+      private static void putFirst(Map<String, TestCaseResult> map, TestCaseResult result) {
+         if (!map.containsKey(result.getName())) {
+            map.put(result.getName(), result);
+         }
+      }
+   }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.result;
+
+/**
+ * Status of a KPI result, as reported by PureLoad.
+ */
+public enum KpiStatus {
+   OK,      // Value within threshold
+   LOW,     // Value below threshold
+   HIGH,    // Value above threshold
+   FAILED,  // KPI failed
+   UNKNOWN; // No or unknown status
+
+   private static final KpiStatus[] STATUSES = values();
+
+   /** @return status with name (ignoring case), or UNKNOWN */
+   public static KpiStatus of(String name) {
+      if (name != null) {
+         for (KpiStatus status : STATUSES) {
+            if (status.name().equalsIgnoreCase(name)) {
+               return status;
+            }
+         }
+      }
+      return UNKNOWN;
+   }
+
+   /** @return true if status indicates a threshold breach or failure */
+   public boolean isBreach() {
+      return (this == LOW) || (this == HIGH) || (this == FAILED);
+   }
+}
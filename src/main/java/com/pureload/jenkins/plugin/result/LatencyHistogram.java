@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.result;
+
+import java.io.Serializable;
+
+/**
+ * Histogram of response times, with fixed memory and bounded relative error (HdrHistogram style).
+ * <p>
+ * Values (microseconds) are counted in buckets. Values below 128 have buckets of their own, and larger
+ * values are counted in buckets of 64 per power of two, so a recorded value is known within 1/64
+ * (about 1.6%) of its value. Values above {@link #MAX_VALUE} (about 19 hours) are counted as the max value.
+ * <p>
+ * Histograms of the same scenario (e.g. from several shards) are merged by adding their counts.
+ */
+public class LatencyHistogram implements Serializable {
+   private static final long serialVersionUID = 1L;
+
+   /** Max value (us) that is recorded. */
+   public static final long MAX_VALUE = (1L << 36) - 1;
+
+   private static final int SUB_BUCKET_BITS = 6;
+   private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS; // 64
+   private static final int LINEAR_LIMIT = 2 * SUB_BUCKET_HALF;     // 128
+   /** Number of buckets. */
+   static final int LENGTH = index(MAX_VALUE) + 1;
+
+   private final long[] counts = new long[LENGTH];
+   private long totalCount;
+   private long min = Long.MAX_VALUE;
+   private long max;
+   private long sum;
+
+   /** Record one value (us). */
+   public void record(long value) {
+      record(value, 1);
+   }
+
+   /** Record value (us) count times. */
+   public void record(long value, long count) {
+      if (count <= 0) {
+         return;
+      }
+      long v = Math.min(Math.max(value, 0), MAX_VALUE);
+      counts[index(v)] += count;
+      totalCount += count;
+      min = Math.min(min, v);
+      max = Math.max(max, v);
+      sum += v * count;
+   }
+
+   /** Add all values of other histogram. */
+   public void add(LatencyHistogram other) {
+      if (other.totalCount == 0) {
+         return;
+      }
+      for (int i = 0; i < LENGTH; i++) {
+         counts[i] += other.counts[i];
+      }
+      totalCount += other.totalCount;
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+      sum += other.sum;
+   }
+
+   /** @return copy of this histogram */
+   public LatencyHistogram copy() {
+      LatencyHistogram copy = new LatencyHistogram();
+      copy.add(this);
+      return copy;
+   }
+
+   public long getTotalCount() { return totalCount; }
+   /** @return min value (us), or 0 if empty */
+   public long getMin() { return (totalCount > 0) ? min : 0; }
+   /** @return max value (us), or 0 if empty */
+   public long getMax() { return max; }
+   /** @return mean value (us), or 0 if empty */
+   public double getMean() { return (totalCount > 0) ? (double) sum / totalCount : 0; }
+   /** @return sum of all values (us) */
+   public long getSum() { return sum; }
+
+   /**
+    * @param percentile percentile (0 - 100)
+    * @return value (us) that the given percentile of all values are less than or equal to (within
+    *         the precision of the histogram), or 0 if empty
+    */
+   public long getValueAtPercentile(double percentile) {
+      if (totalCount == 0) {
+         return 0;
+      }
+      double p = Math.min(Math.max(percentile, 0), 100);
+      long target = Math.max(1, (long) Math.ceil(p / 100 * totalCount));
+      long cumulative = 0;
+      for (int i = 0; i < LENGTH; i++) {
+         cumulative += counts[i];
+         if (cumulative >= target) {
+            return Math.min(Math.max(highestValue(i), min), max);
+         }
+      }
+      return max;
+   }
+
+   /** @return number of values counted in bucket */
+   long getCount(int index) { return counts[index]; }
+
+   /** Restore state; used when read by {@link ResultCodec}. */
+   void restore(int index, long count) {
+      counts[index] = count;
+      totalCount += count;
+   }
+
+   /** Restore state; used when read by {@link ResultCodec}. */
+   void restore(long min, long max, long sum) {
+      this.min = (totalCount > 0) ? min : Long.MAX_VALUE;
+      this.max = max;
+      this.sum = sum;
+   }
+
+   /** @return index of bucket of value */
+   static int index(long value) {
+      if (value < LINEAR_LIMIT) {
+         return (int) value;
+      }
+      int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+      return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+   }
+
+   /** @return highest value counted in bucket with index */
+   static long highestValue(int index) {
+      if (index < LINEAR_LIMIT) {
+         return index;
+      }
+      int shift = (index >> SUB_BUCKET_BITS) - 1;
+      long lowest = (long) ((index & (SUB_BUCKET_HALF - 1)) + SUB_BUCKET_HALF) << shift;
+      return lowest + (1L << shift) - 1;
+   }
+
+   @Override
+   public String toString() {
+      return "LatencyHistogram{" +
+             "count=" + totalCount +
+             ", min=" + getMin() +
+             ", p50=" + getValueAtPercentile(50) +
+             ", p99=" + getValueAtPercentile(99) +
+             ", max=" + max +
+             '}';
+   }
+}
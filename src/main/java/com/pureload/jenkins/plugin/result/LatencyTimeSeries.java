@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.result;
+
+import java.io.Serializable;
+
+/**
+ * Response times of one scenario over a run, with fixed memory.
+ * <p>
+ * Samples are counted in buckets of equal time intervals; for each bucket the number of samples, and the sum,
+ * min and max response time (us) are kept. When a sample is after the last bucket, adjacent buckets are
+ * merged pairwise and the interval doubled, so at most {@link #MAX_BUCKETS} buckets are used no matter how
+ * long the run is. Samples are expected roughly in time order; a sample before the start of the series is
+ * counted in the first bucket.
+ * <p>
+ * Throughput (TPS) of a bucket is its number of samples per second. Series are downsampled to fewer points
+ * the same way (see {@link #downsample}), so min and max response times are kept.
+ */
+public class LatencyTimeSeries implements Serializable {
+   private static final long serialVersionUID = 1L;
+
+   /** Max number of buckets. */
+   public static final int MAX_BUCKETS = 512;
+   /** Interval of buckets (ms) of new series. */
+   static final long INITIAL_INTERVAL = 1000;
+
+   private final long start;
+   private long interval;
+   private int size;
+   private final long[] counts = new long[MAX_BUCKETS];
+   private final long[] sums = new long[MAX_BUCKETS];
+   private final long[] mins = new long[MAX_BUCKETS];
+   private final long[] maxs = new long[MAX_BUCKETS];
+
+   /** @param start start time (ms) of series */
+   public LatencyTimeSeries(long start) {
+      this(start, INITIAL_INTERVAL);
+   }
+
+   LatencyTimeSeries(long start, long interval) {
+      this.start = start;
+      this.interval = interval;
+   }
+
+   /** Record sample with response time (us) at time (ms). */
+   public void record(long timestamp, long value) {
+      record(timestamp, 1, value, value, value);
+   }
+
+   /** Add all buckets of other series (e.g. of another shard). */
+   public void add(LatencyTimeSeries other) {
+      while (interval < other.interval) {
+         compact();
+      }
+      for (int i = 0; i < other.size; i++) {
+         if (other.counts[i] > 0) {
+            record(other.getTime(i), other.counts[i], other.sums[i], other.mins[i], other.maxs[i]);
+         }
+      }
+   }
+
+   /** @return copy of series with at most the given number of buckets (but at least 1) */
+   public LatencyTimeSeries downsample(int points) {
+      LatencyTimeSeries copy = new LatencyTimeSeries(start, interval);
+      copy.add(this);
+      while (copy.size > Math.max(1, points)) {
+         copy.compact();
+      }
+      return copy;
+   }
+
+   /** Record bucket of samples */
+   void record(long timestamp, long count, long sum, long min, long max) {
+      long offset = Math.max(0, timestamp - start);
+      while (offset / interval >= MAX_BUCKETS) {
+         compact();
+      }
+      int i = (int) (offset / interval);
+      if (counts[i] == 0) {
+         mins[i] = min;
+         maxs[i] = max;
+      }
+      else {
+         mins[i] = Math.min(mins[i], min);
+         maxs[i] = Math.max(maxs[i], max);
+      }
+      counts[i] += count;
+      sums[i] += sum;
+      size = Math.max(size, i + 1);
+   }
+
+   /** Merge adjacent buckets pairwise, and double the interval. */
+   private void compact() {
+      int newSize = (size + 1) / 2;
+      for (int i = 0; i < newSize; i++) {
+         int a = 2 * i;
+         int b = a + 1;
+         long count = counts[a];
+         long sum = sums[a];
+         long min = mins[a];
+         long max = maxs[a];
+         if ((b < size) && (counts[b] > 0)) {
+            min = (count > 0) ? Math.min(min, mins[b]) : mins[b];
+            max = (count > 0) ? Math.max(max, maxs[b]) : maxs[b];
+            count += counts[b];
+            sum += sums[b];
+         }
+         counts[i] = count;
+         sums[i] = sum;
+         mins[i] = min;
+         maxs[i] = max;
+      }
+      for (int i = newSize; i < size; i++) {
+         counts[i] = 0;
+         sums[i] = 0;
+      }
+      size = newSize;
+      interval *= 2;
+   }
+
+   /** @return start time (ms) of series */
+   public long getStart() { return start; }
+   /** @return interval of buckets (ms) */
+   public long getInterval() { return interval; }
+   /** @return number of buckets */
+   public int size() { return size; }
+
+   /** @return start time (ms) of bucket */
+   public long getTime(int i) { return start + i * interval; }
+   /** @return number of samples in bucket */
+   public long getCount(int i) { return counts[i]; }
+   /** @return samples per second in bucket */
+   public double getTps(int i) { return counts[i] * 1000.0 / interval; }
+   /** @return mean response time (us) in bucket, or NaN if no samples */
+   public double getMean(int i) { return (counts[i] > 0) ? (double) sums[i] / counts[i] : Double.NaN; }
+   /** @return min response time (us) in bucket, or 0 if no samples */
+   public long getMin(int i) { return (counts[i] > 0) ? mins[i] : 0; }
+   /** @return max response time (us) in bucket, or 0 if no samples */
+   public long getMax(int i) { return (counts[i] > 0) ? maxs[i] : 0; }
+   /** @return sum of response times (us) in bucket */
+   long getSum(int i) { return sums[i]; }
+}
@@ -2,15 +2,24 @@
 
 package com.pureload.jenkins.plugin.result;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import com.pureload.jenkins.plugin.integration.PureLoadResultsAction;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
 /**
  * PureLoad result data holder.
  */
-public class PureLoadResult {
+@ExportedBean(defaultVisibility = 2)
+public class PureLoadResult implements Serializable {
+   private static final long serialVersionUID = 1L;
+
    /** Compare by JUnit report PLC file name, execution date. */
    public static final Comparator<PureLoadResult> BY_NAME_DATE = new Comparator<PureLoadResult>() {
       public int compare(PureLoadResult o1, PureLoadResult o2) {
@@ -28,15 +37,24 @@ public class PureLoadResult {
    private static final Logger LOGGER = Logger.getLogger(PureLoadResultsAction.class.getName());
 
    private JUnitReport junitReport;
+   private String path; // Path of result directory, relative to artifacts/workspace (null if unknown)
    private String totalSummaryHtml;
    private String totalSummaryTableHtml;
+   private Map<String, LatencyHistogram> latencies; // Response times by scenario (null if none)
+   private Map<String, LatencyTimeSeries> timeSeries; // Response times over run by scenario (null if none)
 
    public PureLoadResult(JUnitReport junitReport) {
       this.junitReport = junitReport;
    }
 
+   @Exported
    public JUnitReport getJunitReport() { return junitReport; }
 
+   /** @return path of result directory, relative to artifacts/workspace, or null if not known */
+   @Exported
+   public String getPath() { return path; }
+   public void setPath(String path) { this.path = path; }
+
    public String getTotalSummaryHtml() {
       if (totalSummaryHtml == null) {
          LOGGER.severe("Can not access total summary");
@@ -48,6 +66,9 @@ public class PureLoadResult {
       this.totalSummaryHtml = totalSummaryHtml;
    }
 
+   /** @return total summary, or null if not set */
+   String totalSummaryHtml() { return totalSummaryHtml; }
+
    public String getTotalSummaryTableHtml() {
       if (totalSummaryTableHtml == null) {
          LOGGER.severe("Can not access total summary table");
@@ -58,4 +79,25 @@ public class PureLoadResult {
    public void setTotalSummaryTableHtml(String totalSummaryTableHtml) {
       this.totalSummaryTableHtml = totalSummaryTableHtml;
    }
+
+   /** @return total summary table, or null if not set */
+   String totalSummaryTableHtml() { return totalSummaryTableHtml; }
+
+   /** @return response time histograms by scenario name, in recorded order; empty if none */
+   public Map<String, LatencyHistogram> getLatencies() {
+      return (latencies != null) ? Collections.unmodifiableMap(latencies) :
+             Collections.<String, LatencyHistogram>emptyMap();
+   }
+   public void setLatencies(Map<String, LatencyHistogram> latencies) {
+      this.latencies = ((latencies != null) && !latencies.isEmpty()) ? new LinkedHashMap<>(latencies) : null;
+   }
+
+   /** @return response times over run by scenario name, in recorded order; empty if none */
+   public Map<String, LatencyTimeSeries> getTimeSeries() {
+      return (timeSeries != null) ? Collections.unmodifiableMap(timeSeries) :
+             Collections.<String, LatencyTimeSeries>emptyMap();
+   }
+   public void setTimeSeries(Map<String, LatencyTimeSeries> timeSeries) {
+      this.timeSeries = ((timeSeries != null) && !timeSeries.isEmpty()) ? new LinkedHashMap<>(timeSeries) : null;
+   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.result;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Merges reports of shards of one load test (test suites of one file, or result directories produced
+ * by distributed workers or parallel branches) into one report.
+ * <p>
+ * Results are merged by name, in a single pass over all results, keeping the order in which names
+ * are first found:
+ * <ul>
+ *    <li>A scenario is ok if ok in all shards, and its time is the max time of all shards.</li>
+ *    <li>A KPI is ok if ok in all shards. The first failed KPI result is kept (with its value and
+ *    message), or the first result if ok in all shards.</li>
+ * </ul>
+ * The merged report starts at the earliest start of all shards, and ends at the latest end.
+ */
+public final class ReportMerger {
+
+   private final String fileName;
+   private final Map<String, TestCaseResult> results = new LinkedHashMap<>();
+   private final Set<String> plcFileNames = new LinkedHashSet<>();
+   private long start = Long.MAX_VALUE; // Earliest start (ms), if any date
+   private long end = Long.MIN_VALUE;   // Latest end (ms), if any date
+   private long maxExecTime;            // Max execution time (sec)
+   private boolean truncated;
+   private int count;
+
+   /** @param fileName file name of merged report */
+   public ReportMerger(String fileName) {
+      this.fileName = fileName;
+   }
+
+   /** @return merged report of reports, or the report itself if only one */
+   public static JUnitReport merge(String fileName, List<JUnitReport> reports) {
+      if (reports.size() == 1) {
+         return reports.get(0);
+      }
+      ReportMerger merger = new ReportMerger(fileName);
+      for (JUnitReport report : reports) {
+         merger.add(report);
+      }
+      return merger.getReport();
+   }
+
+   /**
+    * Merge results of shards. Latency histograms and time series are merged by scenario name. The total summaries
+    * of execution reports can not be merged, and are only kept if there is one result.
+    * @return merged result, or the result itself if only one
+    */
+   public static PureLoadResult mergeResults(List<PureLoadResult> results) {
+      if (results.size() == 1) {
+         return results.get(0);
+      }
+      ReportMerger merger = new ReportMerger(results.get(0).getJunitReport().getFileName());
+      Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+      Map<String, LatencyTimeSeries> timeSeries = new LinkedHashMap<>();
+      for (PureLoadResult result : results) {
+         merger.add(result.getJunitReport());
+         for (Map.Entry<String, LatencyHistogram> entry : result.getLatencies().entrySet()) {
+            LatencyHistogram histogram = latencies.get(entry.getKey());
+            if (histogram == null) {
+               latencies.put(entry.getKey(), entry.getValue().copy());
+            }
+            else {
+               histogram.add(entry.getValue());
+            }
+         }
+         for (Map.Entry<String, LatencyTimeSeries> entry : result.getTimeSeries().entrySet()) {
+            LatencyTimeSeries series = timeSeries.get(entry.getKey());
+            timeSeries.put(entry.getKey(), (series != null) ? merge(series, entry.getValue()) : entry.getValue());
+         }
+      }
+      PureLoadResult merged = new PureLoadResult(merger.getReport());
+      merged.setLatencies(latencies);
+      merged.setTimeSeries(timeSeries);
+      return merged;
+   }
+
+   /** @return new series with all buckets of both series, starting at the earliest start */
+   private static LatencyTimeSeries merge(LatencyTimeSeries series1, LatencyTimeSeries series2) {
+      LatencyTimeSeries merged = new LatencyTimeSeries(Math.min(series1.getStart(), series2.getStart()));
+      merged.add(series1);
+      merged.add(series2);
+      return merged;
+   }
+
+   /** Add report of one shard. */
+   public void add(JUnitReport report) {
+      count++;
+      if (report.getPlcFileName() != null) {
+         plcFileNames.add(report.getPlcFileName());
+      }
+      Date date = report.getDate();
+      if (date != null) {
+         start = Math.min(start, date.getTime());
+         end = Math.max(end, date.getTime() + report.getExecTime() * 1000);
+      }
+      maxExecTime = Math.max(maxExecTime, report.getExecTime());
+      truncated |= report.isTruncated();
+
+      for (TestCaseResult result : report.getResults()) {
+         String key = result.getType().name() + '\n' + result.getName();
+         TestCaseResult merged = results.get(key);
+         if (result.getType() == TestCaseResult.Type.KPI) {
+            if ((merged == null) || (merged.isOk() && !result.isOk())) {
+               results.put(key, result);
+            }
+         }
+         else if (merged == null) {
+            // Copy, since it is updated by later shards
+            merged = new TestCaseResult(result.getName(), result.getType());
+            merged.setExecTime(result.getExecTime());
+            merged.setOk(result.isOk());
+            results.put(key, merged);
+         }
+         else {
+            merged.setExecTime(Math.max(merged.getExecTime(), result.getExecTime()));
+            merged.setOk(merged.isOk() && result.isOk());
+         }
+      }
+   }
+
+   /** @return number of reports added */
+   public int getCount() { return count; }
+
+   /** @return merged report of all reports added */
+   public JUnitReport getReport() {
+      JUnitReport report = new JUnitReport(fileName);
+      if (!plcFileNames.isEmpty()) {
+         report.setPlcFileName(StringUtils.join(plcFileNames, ", "));
+      }
+      if (start <= end) {
+         report.setDate(new Date(start));
+         report.setExecTime(Math.max(maxExecTime, (end - start) / 1000));
+      }
+      else {
+         report.setExecTime(maxExecTime);
+      }
+      report.setTruncated(truncated);
+      for (TestCaseResult result : results.values()) {
+         report.setCurrent(result);
+         report.addCurrent();
+      }
+      report.complete();
+      return report;
+   }
+}
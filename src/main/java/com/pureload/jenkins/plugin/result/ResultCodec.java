@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.result;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary format of parsed PureLoad results.
+ * <p>
+ * Strings that repeat (names, messages etc) are written once and then referred to by index,
+ * KPI values and thresholds are written as decimal numbers, KPI statuses as enum ordinals and
+ * KPI timestamps as deltas. Values that can not be represented exactly this way are written
+ * as strings, so reading back always gives results equal to the ones written.
+ * Latency histograms are written as their non-empty buckets, with bucket indexes as deltas, and time series
+ * as their buckets (only the count of empty buckets).
+ * <p>
+ * Files of another format version are rejected.
+ */
+public class ResultCodec {
+   private static final int MAGIC = 0x504c5242; // "PLRB"
+   private static final int VERSION = 1;
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   // Tags of string values
+   private static final int STRING_NULL = 0;
+   private static final int STRING_NEW = 1;
+   private static final int STRING_REF = 2; // First string reference; index is tag - STRING_REF
+
+   // Tags of KPI values and thresholds
+   private static final int NUMBER_STRING = 0;
+   private static final int NUMBER_DECIMAL = 1;
+   private static final int NUMBER_THRESHOLD = 2; // low/high/target decimals
+
+   /** Known KPI statuses, encoded by index (after the string tag). */
+   private static final String[] KPI_STATUSES = {"", "Low", "OK", "High", "Failed", "Ok"};
+
+   private static final TestCaseResult.Type[] TYPES = TestCaseResult.Type.values();
+
+   private ResultCodec() {
+   }
+
+   /** Write results to stream. The stream is not closed. */
+   public static void write(List<PureLoadResult> results, OutputStream os) throws IOException {
+      Writer writer = new Writer(new DataOutputStream(new BufferedOutputStream(os)));
+      writer.out.writeInt(MAGIC);
+      writer.out.writeByte(VERSION);
+      writer.writeVarLong(results.size());
+      for (PureLoadResult result : results) {
+         writer.writeResult(result);
+      }
+      writer.out.flush();
+   }
+
+   /** Read results from stream. The stream is not closed. */
+   public static List<PureLoadResult> read(InputStream is) throws IOException {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+      if (in.readInt() != MAGIC) {
+         throw new IOException("Not a PureLoad result file");
+      }
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+         throw new IOException("Unsupported PureLoad result file version: " + version);
+      }
+      Reader reader = new Reader(in);
+      int count = reader.readCount();
+      List<PureLoadResult> results = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+         results.add(reader.readResult());
+      }
+      return results;
+   }
+
+   /** @return decimal representing string exactly, or null */
+   private static BigDecimal toDecimal(String s) {
+      if (s.isEmpty() || (s.length() > 18)) {
+         return null;
+      }
+      for (int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         if (((c < '0') || (c > '9')) && (c != '.') && (c != '-')) {
+            return null; // Exponent, spaces etc
+         }
+      }
+      try {
+         BigDecimal d = new BigDecimal(s);
+         return d.toPlainString().equals(s) ? d : null;
+      }
+      catch (NumberFormatException e) {
+         return null;
+      }
+   }
+
+   /** @return threshold (low/high/target) decimals representing string exactly, or null */
+   private static BigDecimal[] toThreshold(String s) {
+      String[] parts = s.split("/", -1);
+      if (parts.length != 3) {
+         return null;
+      }
+      BigDecimal[] decimals = new BigDecimal[parts.length];
+      for (int i = 0; i < parts.length; i++) {
+         decimals[i] = toDecimal(parts[i]);
+         if (decimals[i] == null) {
+            return null;
+         }
+      }
+      return decimals;
+   }
+
+   private static class Writer {
+      private final DataOutputStream out;
+      private final Map<String, Integer> strings = new HashMap<>();
+
+      Writer(DataOutputStream out) {
+         this.out = out;
+      }
+
+      void writeResult(PureLoadResult result) throws IOException {
+         writeReport(result.getJunitReport());
+         writeString(result.getPath());
+         writeRawString(result.totalSummaryHtml());
+         writeRawString(result.totalSummaryTableHtml());
+         Map<String, LatencyHistogram> latencies = result.getLatencies();
+         writeVarLong(latencies.size());
+         for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            writeString(entry.getKey());
+            writeHistogram(entry.getValue());
+         }
+         Map<String, LatencyTimeSeries> timeSeries = result.getTimeSeries();
+         writeVarLong(timeSeries.size());
+         for (Map.Entry<String, LatencyTimeSeries> entry : timeSeries.entrySet()) {
+            writeString(entry.getKey());
+            writeTimeSeries(entry.getValue());
+         }
+      }
+
+      private void writeTimeSeries(LatencyTimeSeries series) throws IOException {
+         writeVarLong(zigZag(series.getStart()));
+         writeVarLong(series.getInterval());
+         writeVarLong(series.size());
+         for (int i = 0; i < series.size(); i++) {
+            long count = series.getCount(i);
+            writeVarLong(count);
+            if (count > 0) {
+               writeVarLong(series.getSum(i));
+               writeVarLong(series.getMin(i));
+               writeVarLong(series.getMax(i));
+            }
+         }
+      }
+
+      private void writeHistogram(LatencyHistogram histogram) throws IOException {
+         int buckets = 0;
+         for (int i = 0; i < LatencyHistogram.LENGTH; i++) {
+            if (histogram.getCount(i) > 0) {
+               buckets++;
+            }
+         }
+         writeVarLong(buckets);
+         int previous = 0;
+         for (int i = 0; i < LatencyHistogram.LENGTH; i++) {
+            long count = histogram.getCount(i);
+            if (count > 0) {
+               writeVarLong(i - previous);
+               writeVarLong(count);
+               previous = i;
+            }
+         }
+         writeVarLong(histogram.getMin());
+         writeVarLong(histogram.getMax());
+         writeVarLong(histogram.getSum());
+      }
+
+      void writeReport(JUnitReport report) throws IOException {
+         writeString(report.getFileName());
+         writeString(report.getPlcFileName());
+         Date date = report.getDate();
+         out.writeBoolean(date != null);
+         long base = 0;
+         if (date != null) {
+            base = date.getTime();
+            writeVarLong(base);
+         }
+         writeVarLong(zigZag(report.getExecTime()));
+         out.writeBoolean(report.isTruncated());
+         List<TestCaseResult> results = report.getResults();
+         writeVarLong(results.size());
+         for (TestCaseResult result : results) {
+            writeString(result.getName());
+            out.writeByte(result.getType().ordinal());
+            out.writeBoolean(result.isOk());
+            out.writeFloat(result.getExecTime());
+            writeString(result.getKpiMessage());
+            writeStatus(result.getKpiStatus());
+            writeValue(result.getKpiValue());
+            writeValue(result.getKpiThreshold());
+            // Timestamps as delta to previous (starting with report date); 0 for no timestamp.
+            long timestamp = result.getKpiTimestamp();
+            if (timestamp == 0) {
+               writeVarLong(0);
+            }
+            else {
+               writeVarLong(zigZag(timestamp - base) + 1);
+               base = timestamp;
+            }
+            writeString(result.getKpiMetric());
+            writeString(result.getKpiType());
+         }
+      }
+
+      private void writeStatus(String status) throws IOException {
+         for (int i = 0; i < KPI_STATUSES.length; i++) {
+            if (KPI_STATUSES[i].equals(status)) {
+               writeVarLong(i + 1);
+               return;
+            }
+         }
+         writeVarLong(0);
+         writeString(status);
+      }
+
+      private void writeValue(String value) throws IOException {
+         if (value != null) {
+            BigDecimal d = toDecimal(value);
+            if (d != null) {
+               out.writeByte(NUMBER_DECIMAL);
+               writeDecimal(d);
+               return;
+            }
+            BigDecimal[] threshold = toThreshold(value);
+            if (threshold != null) {
+               out.writeByte(NUMBER_THRESHOLD);
+               for (BigDecimal decimal : threshold) {
+                  writeDecimal(decimal);
+               }
+               return;
+            }
+         }
+         out.writeByte(NUMBER_STRING);
+         writeString(value);
+      }
+
+      private void writeDecimal(BigDecimal d) throws IOException {
+         writeVarLong(zigZag(d.unscaledValue().longValue()));
+         out.writeByte(d.scale());
+      }
+
+      void writeString(String s) throws IOException {
+         if (s == null) {
+            writeVarLong(STRING_NULL);
+            return;
+         }
+         Integer index = strings.get(s);
+         if (index != null) {
+            writeVarLong(STRING_REF + index);
+            return;
+         }
+         strings.put(s, strings.size());
+         writeVarLong(STRING_NEW);
+         writeBytes(s);
+      }
+
+      /** Write (large) string that is not shared. */
+      void writeRawString(String s) throws IOException {
+         if (s == null) {
+            writeVarLong(STRING_NULL);
+            return;
+         }
+         writeVarLong(STRING_NEW);
+         writeBytes(s);
+      }
+
+      private void writeBytes(String s) throws IOException {
+         byte[] bytes = s.getBytes(UTF8);
+         writeVarLong(bytes.length);
+         out.write(bytes);
+      }
+
+      void writeVarLong(long value) throws IOException {
+         while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+         }
+         out.writeByte((int) value);
+      }
+
+      private static long zigZag(long value) {
+         return (value << 1) ^ (value >> 63);
+      }
+   }
+
+   private static class Reader {
+      private final DataInputStream in;
+      private final List<String> strings = new ArrayList<>();
+
+      Reader(DataInputStream in) {
+         this.in = in;
+      }
+
+      PureLoadResult readResult() throws IOException {
+         PureLoadResult result = new PureLoadResult(readReport());
+         result.setPath(readString());
+         result.setTotalSummaryHtml(readRawString());
+         result.setTotalSummaryTableHtml(readRawString());
+         int count = readCount();
+         Map<String, LatencyHistogram> latencies = new LinkedHashMap<>(count * 2);
+         for (int i = 0; i < count; i++) {
+            latencies.put(readString(), readHistogram());
+         }
+         result.setLatencies(latencies);
+         count = readCount();
+         Map<String, LatencyTimeSeries> timeSeries = new LinkedHashMap<>(count * 2);
+         for (int i = 0; i < count; i++) {
+            timeSeries.put(readString(), readTimeSeries());
+         }
+         result.setTimeSeries(timeSeries);
+         return result;
+      }
+
+      private LatencyTimeSeries readTimeSeries() throws IOException {
+         long start = unZigZag(readVarLong());
+         long interval = readVarLong();
+         int size = readCount();
+         if ((interval <= 0) || (size > LatencyTimeSeries.MAX_BUCKETS)) {
+            throw new IOException("Invalid time series: " + interval + "/" + size);
+         }
+         LatencyTimeSeries series = new LatencyTimeSeries(start, interval);
+         for (int i = 0; i < size; i++) {
+            long count = readVarLong();
+            if (count > 0) {
+               series.record(series.getTime(i), count, readVarLong(), readVarLong(), readVarLong());
+            }
+         }
+         return series;
+      }
+
+      private LatencyHistogram readHistogram() throws IOException {
+         LatencyHistogram histogram = new LatencyHistogram();
+         int buckets = readCount();
+         int index = 0;
+         for (int i = 0; i < buckets; i++) {
+            index += readCount();
+            if (index >= LatencyHistogram.LENGTH) {
+               throw new IOException("Invalid histogram bucket: " + index);
+            }
+            histogram.restore(index, readVarLong());
+         }
+         histogram.restore(readVarLong(), readVarLong(), readVarLong());
+         return histogram;
+      }
+
+      JUnitReport readReport() throws IOException {
+         JUnitReport report = new JUnitReport(readString());
+         report.setPlcFileName(readString());
+         long base = 0;
+         if (in.readBoolean()) {
+            base = readVarLong();
+            report.setDate(new Date(base));
+         }
+         report.setExecTime(unZigZag(readVarLong()));
+         report.setTruncated(in.readBoolean());
+         int count = readCount();
+         for (int i = 0; i < count; i++) {
+            String name = readString();
+            int type = in.readUnsignedByte();
+            if (type >= TYPES.length) {
+               throw new IOException("Invalid result type: " + type);
+            }
+            TestCaseResult result = new TestCaseResult(name, TYPES[type]);
+            result.setOk(in.readBoolean());
+            result.setExecTime(in.readFloat());
+            result.setKpiMessage(readString());
+            result.setKpiStatus(readStatus());
+            result.setKpiValue(readValue());
+            result.setKpiThreshold(readValue());
+            long delta = readVarLong();
+            if (delta != 0) {
+               base += unZigZag(delta - 1);
+               result.setKpiTimestamp(base);
+            }
+            result.setKpiMetric(readString());
+            result.setKpiType(readString());
+            report.setCurrent(result);
+            report.addCurrent();
+         }
+         report.complete();
+         return report;
+      }
+
+      private String readStatus() throws IOException {
+         int index = readCount();
+         if (index == 0) {
+            return readString();
+         }
+         if (index > KPI_STATUSES.length) {
+            throw new IOException("Invalid KPI status: " + index);
+         }
+         return KPI_STATUSES[index - 1];
+      }
+
+      private String readValue() throws IOException {
+         int tag = in.readUnsignedByte();
+         switch (tag) {
+            case NUMBER_STRING:
+               return readString();
+            case NUMBER_DECIMAL:
+               return readDecimal().toPlainString();
+            case NUMBER_THRESHOLD:
+               return readDecimal().toPlainString() + '/' + readDecimal().toPlainString() + '/' +
+                      readDecimal().toPlainString();
+            default:
+               throw new IOException("Invalid value tag: " + tag);
+         }
+      }
+
+      private BigDecimal readDecimal() throws IOException {
+         long unscaled = unZigZag(readVarLong());
+         return BigDecimal.valueOf(unscaled, in.readUnsignedByte());
+      }
+
+      String readString() throws IOException {
+         long tag = readVarLong();
+         if (tag == STRING_NULL) {
+            return null;
+         }
+         if (tag == STRING_NEW) {
+            String s = readBytes();
+            strings.add(s);
+            return s;
+         }
+         long index = tag - STRING_REF;
+         if (index >= strings.size()) {
+            throw new IOException("Invalid string reference: " + index);
+         }
+         return strings.get((int) index);
+      }
+
+      String readRawString() throws IOException {
+         long tag = readVarLong();
+         return (tag == STRING_NULL) ? null : readBytes();
+      }
+
+      private String readBytes() throws IOException {
+         byte[] bytes = new byte[readCount()];
+         in.readFully(bytes);
+         return new String(bytes, UTF8);
+      }
+
+      int readCount() throws IOException {
+         long count = readVarLong();
+         if ((count < 0) || (count > Integer.MAX_VALUE)) {
+            throw new IOException("Invalid count: " + count);
+         }
+         return (int) count;
+      }
+
+      long readVarLong() throws IOException {
+         long value = 0;
+         for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+               throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+               return value;
+            }
+         }
+         throw new IOException("Invalid variable length number");
+      }
+
+      private static long unZigZag(long value) {
+         return (value >>> 1) ^ -(value & 1);
+      }
+   }
+}
@@ -4,13 +4,23 @@
 
 package com.pureload.jenkins.plugin.result;
 
+import java.io.Serializable;
 import java.util.Date;
 
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
 /**
  * Simple bean representing result from a test case.
  * This is either scenario result or a KPI Result.
+ * <p>
+ * For KPI results the value, threshold and status are kept both as reported (strings) and
+ * typed; the typed values are derived once when the strings are set.
  */
-public class TestCaseResult {
+@ExportedBean(defaultVisibility = 4)
+public class TestCaseResult implements Serializable {
+   private static final long serialVersionUID = 1L;
+
    /** Result type */
    public enum Type {
       Scenario, // Result from executing a scenario
@@ -28,30 +38,120 @@ public class TestCaseResult {
    private String kpiValue = "";
    private String kpiThreshold = "";
    private long kpiTimestamp = 0;
+   private String kpiMetric;             // KPI metric (e.g. Average), or null
+   private String kpiType;               // KPI type (e.g. Summary), or null
+
+   // Typed KPI attributes (NaN if not a number)
+   private double kpiDoubleValue = Double.NaN;
+   private double kpiThresholdLow = Double.NaN;
+   private double kpiThresholdHigh = Double.NaN;
+   private double kpiThresholdTarget = Double.NaN;
+   private KpiStatus kpiState = KpiStatus.UNKNOWN;
 
    public TestCaseResult(String name, Type type) {
       this.name = name;
       this.type = type;
    }
 
+   @Exported
    public String getName() { return name; }
+   @Exported
    public Type getType() { return type; }
 
+   @Exported
    public boolean isOk() { return ok; }
    public void setOk(boolean ok) { this.ok = ok; }
+   @Exported
    public float getExecTime() { return execTime; }
    public void setExecTime(float execTime) { this.execTime = execTime; }
+   @Exported
    public String getKpiMessage() { return kpiMessage; }
    public void setKpiMessage(String kpiMessage) { this.kpiMessage = kpiMessage; }
+   @Exported
    public String getKpiStatus() { return kpiStatus; }
-   public void setKpiStatus(String kpiStatus) { this.kpiStatus = kpiStatus; }
+   public void setKpiStatus(String kpiStatus) {
+      this.kpiStatus = kpiStatus;
+      this.kpiState = KpiStatus.of(kpiStatus);
+   }
+   @Exported
    public String getKpiValue() { return kpiValue; }
-   public void setKpiValue(String kpiValue) { this.kpiValue = kpiValue; }
+   public void setKpiValue(String kpiValue) {
+      this.kpiValue = kpiValue;
+      this.kpiDoubleValue = parseDouble(kpiValue, 0, (kpiValue != null) ? kpiValue.length() : 0);
+   }
+   @Exported
    public String getKpiThreshold() { return kpiThreshold; }
-   public void setKpiThreshold(String kpiThreshold) { this.kpiThreshold = kpiThreshold; }
+   public void setKpiThreshold(String kpiThreshold) {
+      this.kpiThreshold = kpiThreshold;
+      parseThreshold(kpiThreshold);
+   }
+   @Exported
    public long getKpiTimestamp() { return kpiTimestamp; }
    public void setKpiTimestamp(long kpiTimestamp) { this.kpiTimestamp = kpiTimestamp; }
    public Date getKpiTimestampDate() { return new Date(this.kpiTimestamp); }
+   @Exported
+   public String getKpiMetric() { return kpiMetric; }
+   public void setKpiMetric(String kpiMetric) { this.kpiMetric = kpiMetric; }
+   @Exported
+   public String getKpiType() { return kpiType; }
+   public void setKpiType(String kpiType) { this.kpiType = kpiType; }
+
+   /** @return KPI value, or NaN if not a number */
+   public double getKpiDoubleValue() { return kpiDoubleValue; }
+   /** @return low threshold of KPI, or NaN if not known */
+   public double getKpiThresholdLow() { return kpiThresholdLow; }
+   /** @return high threshold of KPI, or NaN if not known */
+   public double getKpiThresholdHigh() { return kpiThresholdHigh; }
+   /** @return target of KPI, or NaN if not known */
+   public double getKpiThresholdTarget() { return kpiThresholdTarget; }
+   /** @return KPI status */
+   @Exported
+   public KpiStatus getKpiState() { return kpiState; }
+
+   /** Parse threshold as low/high/target. */
+   private void parseThreshold(String threshold) {
+      kpiThresholdLow = Double.NaN;
+      kpiThresholdHigh = Double.NaN;
+      kpiThresholdTarget = Double.NaN;
+      if (threshold == null) {
+         return;
+      }
+      int first = threshold.indexOf('/');
+      int second = (first >= 0) ? threshold.indexOf('/', first + 1) : -1;
+      if ((second < 0) || (threshold.indexOf('/', second + 1) >= 0)) {
+         return;
+      }
+      kpiThresholdLow = parseDouble(threshold, 0, first);
+      kpiThresholdHigh = parseDouble(threshold, first + 1, second);
+      kpiThresholdTarget = parseDouble(threshold, second + 1, threshold.length());
+   }
+
+   /** @return number in s (from start to end), or NaN if not a number */
+   private static double parseDouble(String s, int start, int end) {
+      if ((s == null) || (start >= end)) {
+         return Double.NaN;
+      }
+      char c = s.charAt(start);
+      if (((c < '0') || (c > '9')) && (c != '-') && (c != '+') && (c != '.')) {
+         return Double.NaN; // Avoid exceptions for common non numbers
+      }
+      try {
+         return Double.parseDouble(s.substring(start, end));
+      }
+      catch (NumberFormatException e) {
+         return Double.NaN;
+      }
+   }
+
+   /** Derive typed values of results recorded by older versions. */
+   private Object readResolve() {
+      if (kpiState == null) {
+         kpiState = KpiStatus.of(kpiStatus);
+         kpiDoubleValue = parseDouble(kpiValue, 0, (kpiValue != null) ? kpiValue.length() : 0);
+         parseThreshold(kpiThreshold);
+      }
+      return this;
+   }
 
 
    @Override
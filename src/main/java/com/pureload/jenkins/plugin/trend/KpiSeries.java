@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.trend;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Values of one KPI (in one PLC) for the last builds, ordered by build number.
+ * The number of builds kept is bounded; when full the oldest build is dropped.
+ * Not thread safe; access is synchronized by the owning index.
+ */
+public class KpiSeries {
+   private final String plcName;
+   private final String kpiName;
+   private final int[] builds;
+   private final double[] values;   // NaN if value is not a number
+   private final boolean[] ok;
+   private int size;
+
+   KpiSeries(String plcName, String kpiName, int capacity) {
+      this.plcName = plcName;
+      this.kpiName = kpiName;
+      this.builds = new int[capacity];
+      this.values = new double[capacity];
+      this.ok = new boolean[capacity];
+   }
+
+   public String getPlcName() { return plcName; }
+   public String getKpiName() { return kpiName; }
+
+   /** @return number of builds in series */
+   public int size() { return size; }
+   public int getBuild(int i) { return builds[i]; }
+   public double getValue(int i) { return values[i]; }
+   public boolean isOk(int i) { return ok[i]; }
+
+   /** @return index of first of the last count builds */
+   public int firstOfLast(int count) {
+      return Math.max(0, size - count);
+   }
+
+   /** @return copy of series with (at most) the last count builds */
+   KpiSeries copyOfLast(int count) {
+      int first = firstOfLast(count);
+      KpiSeries copy = new KpiSeries(plcName, kpiName, size - first);
+      System.arraycopy(builds, first, copy.builds, 0, copy.builds.length);
+      System.arraycopy(values, first, copy.values, 0, copy.values.length);
+      System.arraycopy(ok, first, copy.ok, 0, copy.ok.length);
+      copy.size = copy.builds.length;
+      return copy;
+   }
+
+   /** Add (or replace) value of build. */
+   void add(int build, double value, boolean isOk) {
+      int i = Arrays.binarySearch(builds, 0, size, build);
+      if (i < 0) {
+         i = -i - 1;
+         if (size == builds.length) {
+            if (i == 0) {
+               return; // Older than all builds kept
+            }
+            // Drop oldest
+            shift(1, 0, size - 1);
+            size--;
+            i--;
+         }
+         shift(i, i + 1, size - i);
+         size++;
+      }
+      builds[i] = build;
+      values[i] = value;
+      ok[i] = isOk;
+   }
+
+   /** Remove value of build, if any. */
+   void remove(int build) {
+      int i = Arrays.binarySearch(builds, 0, size, build);
+      if (i >= 0) {
+         shift(i + 1, i, size - i - 1);
+         size--;
+      }
+   }
+
+   private void shift(int from, int to, int length) {
+      System.arraycopy(builds, from, builds, to, length);
+      System.arraycopy(values, from, values, to, length);
+      System.arraycopy(ok, from, ok, to, length);
+   }
+
+   void write(DataOutputStream out) throws IOException {
+      out.writeUTF(plcName);
+      out.writeUTF(kpiName);
+      out.writeInt(size);
+      for (int i = 0; i < size; i++) {
+         out.writeInt(builds[i]);
+         out.writeDouble(values[i]);
+         out.writeBoolean(ok[i]);
+      }
+   }
+
+   static KpiSeries read(DataInputStream in, int capacity) throws IOException {
+      KpiSeries series = new KpiSeries(in.readUTF(), in.readUTF(), capacity);
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+         series.add(in.readInt(), in.readDouble(), in.readBoolean());
+      }
+      return series;
+   }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.trend;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+
+/**
+ * Per job index of KPI values over the last builds.
+ * The index is updated once per build when results are published, and stored in the job
+ * directory, so trends can be shown without loading old builds.
+ * <p>
+ * Values of deleted builds are removed. KPIs not published in the last {@link #MAX_BUILDS} builds are
+ * dropped, and the number of KPIs kept is bounded by {@link #MAX_SERIES}; the KPIs least recently published
+ * are dropped first.
+ */
+public class KpiTrendIndex {
+   /** Name of index file in job directory. */
+   static final String INDEX_FILENAME = "pureload-kpi-trend.bin";
+   /** Max number of builds kept per KPI. */
+   public static final int MAX_BUILDS = Integer.getInteger(KpiTrendIndex.class.getName() + ".maxBuilds", 100);
+   /** Max number of KPIs kept. */
+   static final int MAX_SERIES = Integer.getInteger(KpiTrendIndex.class.getName() + ".maxSeries", 10000);
+
+   private static final int MAGIC = 0x504c4b54; // "PLKT"
+   private static final int VERSION = 1;
+   private static final Logger LOGGER = Logger.getLogger(KpiTrendIndex.class.getName());
+   private static final Map<Job<?, ?>, KpiTrendIndex> INDEXES = new WeakHashMap<>();
+
+   private final int maxSeries;
+   private final Map<String, KpiSeries> series = new LinkedHashMap<>();
+   private File file; // Resolved from job directory on each access, as the job may be renamed or moved
+   private long lastModified;
+
+   KpiTrendIndex(File file, int maxSeries) {
+      this.file = file;
+      this.maxSeries = maxSeries;
+   }
+
+   /** @return index of job, loaded from job directory on first access. */
+   public static KpiTrendIndex forJob(Job<?, ?> job) {
+      File file = indexFile(job);
+      synchronized (INDEXES) {
+         KpiTrendIndex index = INDEXES.get(job);
+         if (index == null) {
+            index = new KpiTrendIndex(file, MAX_SERIES);
+            index.load();
+            INDEXES.put(job, index);
+         }
+         else {
+            index.setFile(file);
+         }
+         return index;
+      }
+   }
+
+   /** @return true if job has an index (results has been published). */
+   public static boolean exists(Job<?, ?> job) {
+      return indexFile(job).exists();
+   }
+
+   private static File indexFile(Job<?, ?> job) {
+      return new File(job.getRootDir(), INDEX_FILENAME);
+   }
+
+   private synchronized void setFile(File file) {
+      this.file = file;
+   }
+
+   /** Add KPI values of build, drop KPIs no longer published and store index. */
+   public synchronized void update(int build, List<PureLoadResult> results) throws IOException {
+      for (PureLoadResult result : results) {
+         JUnitReport report = result.getJunitReport();
+         for (TestCaseResult kpi : report.getKpis()) {
+            getOrCreateSeries(report.getPlcFileName(), kpi.getName()).add(build, kpi.getKpiDoubleValue(), kpi.isOk());
+         }
+      }
+      prune(build);
+      save();
+   }
+
+   /** Remove KPI values of (deleted) build and store index. */
+   public synchronized void remove(int build) throws IOException {
+      for (KpiSeries s : series.values()) {
+         s.remove(build);
+      }
+      prune(build);
+      save();
+   }
+
+   /** @return number of KPIs in index */
+   synchronized int size() {
+      return series.size();
+   }
+
+   /**
+    * Drop KPIs without values, or not published in the last {@link #MAX_BUILDS} builds (before build), and the
+    * KPIs least recently published if there are more than max series.
+    */
+   private void prune(int build) {
+      for (Iterator<KpiSeries> it = series.values().iterator(); it.hasNext(); ) {
+         KpiSeries s = it.next();
+         if ((s.size() == 0) || (s.getBuild(s.size() - 1) <= build - MAX_BUILDS)) {
+            it.remove();
+         }
+      }
+      if (series.size() <= maxSeries) {
+         return;
+      }
+      List<KpiSeries> byLastBuild = new ArrayList<>(series.values());
+      Collections.sort(byLastBuild, new Comparator<KpiSeries>() {
+         @Override
+         public int compare(KpiSeries s1, KpiSeries s2) {
+            return Integer.compare(s1.getBuild(s1.size() - 1), s2.getBuild(s2.size() - 1));
+         }
+      });
+      for (KpiSeries s : byLastBuild.subList(0, series.size() - maxSeries)) {
+         series.remove(s.getPlcName() + '\n' + s.getKpiName());
+      }
+   }
+
+   /** @return copy of all series with (at most) the last count builds. */
+   public synchronized List<KpiSeries> getSeries(int count) {
+      List<KpiSeries> copies = new ArrayList<>(series.size());
+      for (KpiSeries s : series.values()) {
+         copies.add(s.copyOfLast(count));
+      }
+      return copies;
+   }
+
+   /** @return copy of series at index with (at most) the last count builds, or null. */
+   public synchronized KpiSeries getSeries(int index, int count) {
+      if ((index < 0) || (index >= series.size())) {
+         return null;
+      }
+      return new ArrayList<>(series.values()).get(index).copyOfLast(count);
+   }
+
+   /**
+    * @return values (numbers only) of KPI in the last count builds before build, most recent first;
+    *         empty if none
+    */
+   public synchronized double[] getValues(String plcName, String kpiName, int beforeBuild, int count) {
+      KpiSeries s = series.get(plcName + '\n' + kpiName);
+      if (s == null) {
+         return new double[0];
+      }
+      double[] values = new double[Math.min(count, s.size())];
+      int n = 0;
+      for (int i = s.size() - 1; (i >= 0) && (n < values.length); i--) {
+         if ((s.getBuild(i) < beforeBuild) && !Double.isNaN(s.getValue(i))) {
+            values[n++] = s.getValue(i);
+         }
+      }
+      return (n == values.length) ? values : Arrays.copyOf(values, n);
+   }
+
+   /** @return time index was last modified (ms). */
+   public synchronized long getLastModified() {
+      return lastModified;
+   }
+
+   private KpiSeries getOrCreateSeries(String plcName, String kpiName) {
+      String key = plcName + '\n' + kpiName;
+      KpiSeries s = series.get(key);
+      if (s == null) {
+         s = new KpiSeries(plcName, kpiName, MAX_BUILDS);
+         series.put(key, s);
+      }
+      return s;
+   }
+
+   void load() {
+      if (!file.exists()) {
+         return;
+      }
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+         if ((in.readInt() != MAGIC) || (in.readUnsignedByte() > VERSION)) {
+            LOGGER.warning("Unknown KPI trend index format: " + file);
+            return;
+         }
+         int count = in.readInt();
+         for (int i = 0; i < count; i++) {
+            KpiSeries s = KpiSeries.read(in, MAX_BUILDS);
+            series.put(s.getPlcName() + '\n' + s.getKpiName(), s);
+         }
+         lastModified = file.lastModified();
+      }
+      catch (IOException e) {
+         LOGGER.log(Level.WARNING, "Can not read KPI trend index: " + file, e);
+         series.clear();
+      }
+   }
+
+   private void save() throws IOException {
+      File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+         out.writeInt(MAGIC);
+         out.writeByte(VERSION);
+         out.writeInt(series.size());
+         for (KpiSeries s : series.values()) {
+            s.write(out);
+         }
+      }
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      lastModified = System.currentTimeMillis();
+   }
+
+   /** Removes values of deleted builds from the index of the job. */
+   @Extension
+   public static class DeletedBuildListener extends RunListener<Run<?, ?>> {
+      @Override
+      public void onDeleted(Run<?, ?> run) {
+         Job<?, ?> job = run.getParent();
+         if (!exists(job)) {
+            return;
+         }
+         try {
+            forJob(job).remove(run.getNumber());
+         }
+         catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Can not remove " + run + " from KPI trend index", e);
+         }
+      }
+   }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+/*
+ * Loads PLC fragments (KPI pages and execution reports) of the results page on demand.
+ * Links and forms inside a fragment are resolved relative to the URL of the fragment and
+ * loaded into the same container.
+ */
+(function () {
+    function load(container, url) {
+        var xhr = new XMLHttpRequest();
+        xhr.open("GET", url, true);
+        xhr.onreadystatechange = function () {
+            if (xhr.readyState === 4) {
+                if (xhr.status === 200) {
+                    container.setAttribute("data-src", url);
+                    container.innerHTML = xhr.responseText;
+                } else {
+                    container.innerHTML = "<p class=\"red\">Can not load results (" + xhr.status + ")</p>";
+                }
+            }
+        };
+        container.innerHTML = "<p>Loading...</p>";
+        xhr.send();
+    }
+
+    function resolve(container, href) {
+        var src = container.getAttribute("data-src");
+        return src.substring(0, src.lastIndexOf("/") + 1) + href;
+    }
+
+    function fragmentOf(element) {
+        while (element && !(element.className && (" " + element.className + " ").indexOf(" pureload-fragment ") >= 0)) {
+            element = element.parentNode;
+        }
+        return element;
+    }
+
+    document.addEventListener("click", function (event) {
+        var target = event.target;
+        if (!target || target.tagName !== "A") {
+            return;
+        }
+        if ((" " + target.className + " ").indexOf(" pureload-load ") >= 0) {
+            event.preventDefault();
+            var container = document.getElementById(target.getAttribute("data-target"));
+            if (container.getAttribute("data-src")) {
+                // Toggle loaded fragment
+                container.style.display = (container.style.display === "none") ? "" : "none";
+            } else {
+                load(container, target.getAttribute("href"));
+            }
+        } else if ((" " + target.className + " ").indexOf(" pureload-page ") >= 0) {
+            event.preventDefault();
+            var fragment = fragmentOf(target);
+            load(fragment, resolve(fragment, target.getAttribute("href")));
+        }
+    }, false);
+
+    document.addEventListener("submit", function (event) {
+        var form = event.target;
+        if (!form || (" " + form.className + " ").indexOf(" pureload-filter ") < 0) {
+            return;
+        }
+        event.preventDefault();
+        var query = [];
+        for (var i = 0; i < form.elements.length; i++) {
+            var e = form.elements[i];
+            if (e.name && (e.type !== "checkbox" || e.checked)) {
+                query.push(encodeURIComponent(e.name) + "=" + encodeURIComponent(e.value));
+            }
+        }
+        var fragment = fragmentOf(form);
+        load(fragment, resolve(fragment, form.getAttribute("action")) + "?" + query.join("&"));
+    }, false);
+})();
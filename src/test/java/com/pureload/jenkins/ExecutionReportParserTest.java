@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import com.pureload.jenkins.plugin.parser.ExecutionReportParser;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test extracting total summary from execution report.
+ */
+public class ExecutionReportParserTest {
+
+   @Test
+   public void testTotalSummary() throws Exception {
+      PureLoadResult result = new PureLoadResult(null);
+      try (InputStream is = getClass().getResourceAsStream("/report-test1.html")) {
+         ExecutionReportParser.parseTotalSummary(is, ExecutionReportParser.REPORT_CHARSET, result);
+      }
+      Assert.assertEquals("<table class=\"summary\">\n" +
+                          "  <tr><th>Execution Time</th><td>18 s</td></tr>\n" +
+                          "  <tr><th>Executed Scenarios</th><td>1 234</td></tr>\n" +
+                          "  <tr><th>Rate</th><td>68.6 scenarios/s &#8212; \u00f6kning</td></tr>\n" +
+                          "</table>\n",
+                          result.getTotalSummaryHtml());
+      Assert.assertEquals("<table class=\"results\">" +
+                          "  <tr><th>Task</th><th>Count</th><th>Avg (ms)</th></tr>\n" +
+                          "  <tr><td>SleepTask</td><td>1234</td><td>1002</td></tr>\n" +
+                          "</table>\n",
+                          result.getTotalSummaryTableHtml());
+   }
+
+   /** Lines terminated by CRLF, and no total summary table */
+   @Test
+   public void testTotalSummaryCrLf() throws Exception {
+      String html = "<h3>Total</h3>\r\n<p>\r\n<table>\r\n<tr><td>1</td></tr>\r\n</table>\r\n<h3>Scenarios</h3>";
+      PureLoadResult result = new PureLoadResult(null);
+      ExecutionReportParser.parseTotalSummary(new ByteArrayInputStream(html.getBytes("UTF-8")),
+                                              ExecutionReportParser.REPORT_CHARSET, result);
+      Assert.assertEquals("<table>\n<tr><td>1</td></tr>\n</table>\n", result.getTotalSummaryHtml());
+      Assert.assertEquals("", result.getTotalSummaryTableHtml());
+   }
+
+   /** No total summary */
+   @Test
+   public void testNoTotalSummary() throws Exception {
+      String html = "<html><body><h3>Scenarios</h3></body></html>";
+      PureLoadResult result = new PureLoadResult(null);
+      ExecutionReportParser.parseTotalSummary(new ByteArrayInputStream(html.getBytes("UTF-8")),
+                                              ExecutionReportParser.REPORT_CHARSET, result);
+      Assert.assertEquals("", result.getTotalSummaryHtml());
+      Assert.assertEquals("", result.getTotalSummaryTableHtml());
+   }
+}
@@ -5,9 +5,18 @@
 package com.pureload.jenkins;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.pureload.jenkins.plugin.parser.JUnitParser;
+import com.pureload.jenkins.plugin.parser.KpiListener;
 import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.KpiStatus;
+import com.pureload.jenkins.plugin.result.ReportMerger;
 import com.pureload.jenkins.plugin.result.TestCaseResult;
 import org.junit.Assert;
 import org.junit.Test;
@@ -40,6 +49,9 @@ public class JUnitParserTest {
       TestCaseResult[] scenarioResults = report.getScenarioResults();
       System.out.println(report);
       Assert.assertEquals(1, kpiResults.length);
+      Assert.assertEquals("Average", kpiResults[0].getKpiMetric());
+      Assert.assertEquals("Summary", kpiResults[0].getKpiType());
+      Assert.assertEquals(KpiStatus.FAILED, kpiResults[0].getKpiState());
       Assert.assertEquals(2, scenarioResults.length);
       Assert.assertTrue(scenarioResults[0].isOk());
    }
@@ -57,10 +69,54 @@ public class JUnitParserTest {
       Assert.assertEquals("108.213", kpiResults[1].getKpiValue());
       Assert.assertEquals("25/105/20", kpiResults[1].getKpiThreshold());
       Assert.assertEquals(1544448264144L, kpiResults[1].getKpiTimestamp());
+      Assert.assertEquals(108.213, kpiResults[1].getKpiDoubleValue(), 0.0);
+      Assert.assertEquals(25, kpiResults[1].getKpiThresholdLow(), 0.0);
+      Assert.assertEquals(105, kpiResults[1].getKpiThresholdHigh(), 0.0);
+      Assert.assertEquals(20, kpiResults[1].getKpiThresholdTarget(), 0.0);
+      Assert.assertEquals(KpiStatus.HIGH, kpiResults[1].getKpiState());
       Assert.assertEquals(1, scenarioResults.length);
       Assert.assertFalse(scenarioResults[0].isOk());
    }
 
+   /** Parsing should stop at first failed KPI, keeping results parsed so far */
+   @Test
+   public void testStopOnBreach() throws Exception {
+      File junitReportFile = new File(getClass().getResource("/junit-test13.xml").toURI());
+      for (JUnitParser.Backend backend : JUnitParser.Backend.values()) {
+         JUnitReport report = JUnitParser.parse(junitReportFile, backend, KpiListener.STOP_ON_BREACH);
+         Assert.assertTrue(report.isTruncated());
+         Assert.assertEquals(1, report.getScenarios().size());
+         Assert.assertEquals(1, report.getKpis().size());
+         Assert.assertFalse(report.isSuccess());
+         Assert.assertEquals("99.003", report.getKpis().get(0).getKpiValue());
+      }
+      Assert.assertFalse(JUnitParser.parse(junitReportFile).isTruncated());
+   }
+
+   /** Partitioned results, lookup by name and aggregates */
+   @Test
+   public void testIndexedResults() throws Exception {
+      File junitReportFile = new File(getClass().getResource("/junit-test13.xml").toURI());
+      JUnitReport report = JUnitParser.parse(junitReportFile);
+      Assert.assertEquals(2, report.getKpis().size());
+      Assert.assertEquals(1, report.getScenarios().size());
+      Assert.assertSame(report.getKpis(), report.getKpis());
+      TestCaseResult kpi = report.getKpis().get(1);
+      Assert.assertSame(kpi, report.getKpi(kpi.getName()));
+      Assert.assertSame(report.getScenarios().get(0), report.getScenario(report.getScenarios().get(0).getName()));
+      Assert.assertNull(report.getKpi("No such KPI"));
+      Assert.assertEquals(2, report.getKpiPassCount() + report.getKpiFailCount());
+      Assert.assertEquals(report.getKpiFailCount() == 0, report.isSuccess());
+      Assert.assertEquals(report.getScenarios().get(0).getExecTime(), report.getTotalScenarioTime(), 0.001);
+      try {
+         report.getKpis().clear();
+         Assert.fail("KPI results should not be modifiable");
+      }
+      catch (UnsupportedOperationException e) {
+         // Expected
+      }
+   }
+
    /** A simple test with 1 scenario and no errors or KPI*/
    @Test
    public void testJUnit3() throws Exception {
@@ -74,4 +130,90 @@ public class JUnitParserTest {
       Assert.assertTrue(scenarioResults[0].isOk());
    }
 
+   /** Parse same files concurrently, reusing pooled parsers */
+   @Test
+   public void testConcurrentParse() throws Exception {
+      final File junitReportFile = new File(getClass().getResource("/junit-test13.xml").toURI());
+      JUnitReport expected = JUnitParser.parse(junitReportFile);
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         List<Future<JUnitReport>> futures = new ArrayList<>();
+         for (int i = 0; i < 100; i++) {
+            futures.add(executor.submit(new Callable<JUnitReport>() {
+               @Override
+               public JUnitReport call() throws Exception {
+                  return JUnitParser.parse(junitReportFile);
+               }
+            }));
+         }
+         for (Future<JUnitReport> future : futures) {
+            JUnitReport report = future.get();
+            Assert.assertEquals("kpi-percent.plc", report.getPlcFileName());
+            Assert.assertEquals(expected.getDate(), report.getDate());
+            Assert.assertEquals(2, report.getKpiResults().length);
+         }
+      }
+      finally {
+         executor.shutdown();
+      }
+   }
+
+   /** Test suites of one report are merged by name */
+   @Test
+   public void testMultipleSuites() throws Exception {
+      File junitReportFile = new File(getClass().getResource("/junit-test-shards.xml").toURI());
+      for (JUnitParser.Backend backend : JUnitParser.Backend.values()) {
+         JUnitReport report = JUnitParser.parse(junitReportFile, backend);
+         Assert.assertEquals("kpi-percent.plc", report.getPlcFileName());
+         Assert.assertEquals(22, report.getExecTime()); // From start of first to end of second suite
+         Assert.assertEquals(2, report.getScenarios().size());
+         Assert.assertFalse(report.getScenario("Scenario0").isOk());
+         Assert.assertEquals(3.0, report.getScenario("Scenario0").getExecTime(), 0.0);
+         Assert.assertTrue(report.getScenario("Scenario1").isOk());
+         Assert.assertEquals(1, report.getKpis().size());
+         Assert.assertEquals(1, report.getKpiFailCount());
+         Assert.assertEquals(108.213, report.getKpis().get(0).getKpiDoubleValue(), 0.0);
+         Assert.assertFalse(report.isSuccess());
+      }
+   }
+
+   /** Reports of shards are merged in order of first occurrence */
+   @Test
+   public void testMergeReports() throws Exception {
+      List<JUnitReport> reports = new ArrayList<>();
+      for (String name : new String[] {"/junit-test13.xml", "/junit-test1.xml"}) {
+         reports.add(JUnitParser.parse(new File(getClass().getResource(name).toURI())));
+      }
+      JUnitReport merged = ReportMerger.merge("merged.xml", reports);
+      Assert.assertEquals("merged.xml", merged.getFileName());
+      int scenarios = reports.get(0).getScenarios().size() + reports.get(1).getScenarios().size() -
+                      (reports.get(1).getScenario("Scenario0") != null ? 1 : 0);
+      Assert.assertEquals(scenarios, merged.getScenarios().size());
+      Assert.assertEquals(reports.get(0).getKpis().size() + reports.get(1).getKpis().size(), merged.getKpis().size());
+      Assert.assertEquals(reports.get(0).getKpis().get(0).getName(), merged.getKpis().get(0).getName());
+      Assert.assertSame(reports.get(0), ReportMerger.merge("merged.xml", reports.subList(0, 1)));
+   }
+
+   /** StAX backend should give identical reports */
+   @Test
+   public void testStaxBackend() throws Exception {
+      for (String name : new String[] {"/junit-test1.xml", "/junit-test12.xml", "/junit-test13.xml", "/junit-test3.xml",
+                                       "/junit-test-shards.xml"}) {
+         File junitReportFile = new File(getClass().getResource(name).toURI());
+         JUnitReport saxReport = JUnitParser.parse(junitReportFile, JUnitParser.Backend.SAX);
+         JUnitReport staxReport = JUnitParser.parse(junitReportFile, JUnitParser.Backend.STAX);
+         Assert.assertEquals(saxReport.toString(), staxReport.toString());
+         Assert.assertEquals(saxReport.getDate(), staxReport.getDate());
+         Assert.assertEquals(saxReport.getExecTime(), staxReport.getExecTime());
+         TestCaseResult[] saxKpis = saxReport.getKpiResults();
+         TestCaseResult[] staxKpis = staxReport.getKpiResults();
+         Assert.assertEquals(saxKpis.length, staxKpis.length);
+         for (int i = 0; i < saxKpis.length; i++) {
+            Assert.assertEquals(saxKpis[i].getKpiValue(), staxKpis[i].getKpiValue());
+            Assert.assertEquals(saxKpis[i].getKpiThreshold(), staxKpis[i].getKpiThreshold());
+            Assert.assertEquals(saxKpis[i].getKpiStatus(), staxKpis[i].getKpiStatus());
+            Assert.assertEquals(saxKpis[i].getKpiTimestamp(), staxKpis[i].getKpiTimestamp());
+         }
+      }
+   }
 }
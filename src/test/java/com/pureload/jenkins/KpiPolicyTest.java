@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import com.pureload.jenkins.plugin.parser.JUnitParser;
+import com.pureload.jenkins.plugin.policy.KpiHistory;
+import com.pureload.jenkins.plugin.policy.KpiPolicy;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test compiling and evaluating KPI rules.
+ */
+public class KpiPolicyTest {
+
+   /** History of TPS (junit-test13.xml has TPS 108.213) */
+   private static final KpiHistory HISTORY = new KpiHistory() {
+      @Override
+      public double[] getValues(String plcName, String kpiName, int count) {
+         return kpiName.startsWith("TPS") ? new double[] {120, 100, 115} : new double[0];
+      }
+   };
+
+   @Test
+   public void testStaticRules() throws Exception {
+      List<PureLoadResult> results = parse("/junit-test13.xml");
+      Assert.assertTrue(KpiPolicy.parse("\"TPS*\" < 200\n# Comment\n\n\"ok percent*\" > 99").evaluate(results, HISTORY)
+                                 .isEmpty());
+      List<KpiPolicy.Violation> violations = KpiPolicy.parse("TPS* < 100").evaluate(results, HISTORY);
+      Assert.assertEquals(1, violations.size());
+      Assert.assertEquals(108.213, violations.get(0).getValue(), 0.0);
+      Assert.assertEquals(100, violations.get(0).getLimit(), 0.0);
+   }
+
+   @Test
+   public void testRelativeRules() throws Exception {
+      List<PureLoadResult> results = parse("/junit-test13.xml");
+      // Median of history is 115; 95% is 109.25
+      List<KpiPolicy.Violation> violations = KpiPolicy.parse("\"TPS*\" >= 95% of median(10)").evaluate(results, HISTORY);
+      Assert.assertEquals(1, violations.size());
+      Assert.assertEquals(109.25, violations.get(0).getLimit(), 0.0001);
+      Assert.assertTrue(KpiPolicy.parse("\"TPS*\" >= 90% of median(10)").evaluate(results, HISTORY).isEmpty());
+      Assert.assertTrue(KpiPolicy.parse("\"TPS*\" > min(3)").evaluate(results, HISTORY).isEmpty());
+      // No history; rule skipped
+      Assert.assertTrue(KpiPolicy.parse("\"Ok*\" > max(5)").evaluate(results, HISTORY).isEmpty());
+   }
+
+   @Test
+   public void testInvalidRules() {
+      for (String rules : new String[] {"TPS", "TPS = 5", "TPS < abc", "TPS < median(0)", "TPS < 5\nTPS <"}) {
+         try {
+            KpiPolicy.parse(rules);
+            Assert.fail("Invalid rule accepted: " + rules);
+         }
+         catch (IllegalArgumentException e) {
+            // Expected
+         }
+      }
+   }
+
+   private List<PureLoadResult> parse(String name) throws Exception {
+      File junitReportFile = new File(getClass().getResource(name).toURI());
+      return Collections.singletonList(new PureLoadResult(JUnitParser.parse(junitReportFile)));
+   }
+}
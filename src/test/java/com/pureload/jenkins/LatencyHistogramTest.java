@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import com.pureload.jenkins.plugin.parser.LatencyCsvParser;
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.LatencyHistogram;
+import com.pureload.jenkins.plugin.result.LatencyTimeSeries;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test response time histograms, time series and parsing of response times from CSV.
+ */
+public class LatencyHistogramTest {
+
+   /** Percentiles are within the precision of the histogram */
+   @Test
+   public void testPercentiles() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (long value = 1; value <= 100000; value++) {
+         histogram.record(value * 10);
+      }
+      Assert.assertEquals(100000, histogram.getTotalCount());
+      Assert.assertEquals(10, histogram.getMin());
+      Assert.assertEquals(1000000, histogram.getMax());
+      Assert.assertEquals(500005, histogram.getMean(), 0.0);
+      for (double p : new double[] {50, 90, 99, 99.9}) {
+         double expected = p * 10000;
+         Assert.assertEquals("P" + p, expected, histogram.getValueAtPercentile(p), expected / 64);
+      }
+      Assert.assertEquals(1000000, histogram.getValueAtPercentile(100));
+      Assert.assertEquals(0, new LatencyHistogram().getValueAtPercentile(50));
+   }
+
+   /** Merged histogram equals histogram of all values */
+   @Test
+   public void testAdd() {
+      LatencyHistogram all = new LatencyHistogram();
+      LatencyHistogram shard1 = new LatencyHistogram();
+      LatencyHistogram shard2 = new LatencyHistogram();
+      for (long value = 0; value < 10000; value++) {
+         all.record(value * value);
+         ((value % 3 == 0) ? shard1 : shard2).record(value * value);
+      }
+      LatencyHistogram merged = shard1.copy();
+      merged.add(shard2);
+      Assert.assertEquals(all.getTotalCount(), merged.getTotalCount());
+      Assert.assertEquals(all.getMin(), merged.getMin());
+      Assert.assertEquals(all.getMax(), merged.getMax());
+      Assert.assertEquals(all.getMean(), merged.getMean(), 0.0);
+      for (double p : new double[] {1, 50, 95, 99.99}) {
+         Assert.assertEquals(all.getValueAtPercentile(p), merged.getValueAtPercentile(p));
+      }
+      Assert.assertEquals(LatencyHistogram.MAX_VALUE, histogramOf(Long.MAX_VALUE).getMax());
+      Assert.assertEquals(0, histogramOf(-5).getMin());
+   }
+
+   @Test
+   public void testParseCsv() throws Exception {
+      String csv = "Time;Task;Response Time;Status\n" +
+                   "1544448254143;Login;12.5;Ok\n" +
+                   "1544448254144;\"Search\";105;Ok\n" +
+                   "1544448254145;Login;7.25;Ok\n" +
+                   "\n" +
+                   "1544448254146;Search;n/a;Failed\n";
+      Map<String, LatencyHistogram> histograms = parse(csv, "task, response time").getLatencies();
+      Assert.assertArrayEquals(new String[] {"Login", "Search"}, histograms.keySet().toArray());
+      Assert.assertEquals(2, histograms.get("Login").getTotalCount());
+      Assert.assertEquals(7250, histograms.get("Login").getMin());
+      Assert.assertEquals(12500, histograms.get("Login").getMax());
+      Assert.assertEquals(1, histograms.get("Search").getTotalCount());
+
+      // By column number, no header
+      histograms = parse("1,Login,10\n2,Login,20\n", "2,3").getLatencies();
+      Assert.assertEquals(2, histograms.get("Login").getTotalCount());
+
+      // With timestamps
+      PureLoadResult result = parse(csv, "task,response time,time");
+      LatencyTimeSeries series = result.getTimeSeries().get("Login");
+      Assert.assertEquals(1544448254143L, series.getStart());
+      Assert.assertEquals(1, series.size());
+      Assert.assertEquals(2, series.getCount(0));
+      Assert.assertEquals(12500, series.getMax(0));
+
+      for (String columns : new String[] {"task", "task,", "0,1", "a,b,c,d"}) {
+         try {
+            LatencyCsvParser.of("times.csv", columns);
+            Assert.fail("Invalid columns accepted: " + columns);
+         }
+         catch (IllegalArgumentException e) {
+            // Expected
+         }
+      }
+   }
+
+   /** Series of a long run are compacted to fixed size, and downsampled keeping min and max */
+   @Test
+   public void testTimeSeries() {
+      long start = 1544448254143L;
+      LatencyTimeSeries series = new LatencyTimeSeries(start);
+      // 12 hours, 10 samples per second
+      for (long t = 0; t < 12 * 3600 * 1000; t += 100) {
+         series.record(start + t, (t % 60000 == 0) ? 900000 : 1000 + (t % 1000));
+      }
+      Assert.assertTrue(series.size() <= LatencyTimeSeries.MAX_BUCKETS);
+      Assert.assertTrue(series.size() > LatencyTimeSeries.MAX_BUCKETS / 2);
+      long total = 0;
+      for (int i = 0; i < series.size(); i++) {
+         total += series.getCount(i);
+         Assert.assertEquals(900000, series.getMax(i));
+         Assert.assertEquals(1000, series.getMin(i));
+      }
+      Assert.assertEquals(12 * 3600 * 10, total);
+      Assert.assertEquals(10.0, series.getTps(1), 0.0);
+
+      LatencyTimeSeries points = series.downsample(100);
+      Assert.assertTrue(points.size() <= 100);
+      Assert.assertEquals(900000, points.getMax(0));
+      Assert.assertEquals(10.0, points.getTps(1), 0.0);
+
+      // Merged series
+      LatencyTimeSeries other = new LatencyTimeSeries(start);
+      other.record(start + 500, 2000);
+      other.add(series);
+      Assert.assertEquals(series.getInterval(), other.getInterval());
+      Assert.assertEquals(series.getCount(0) + 1, other.getCount(0));
+   }
+
+   private static PureLoadResult parse(String csv, String columns) throws Exception {
+      PureLoadResult result = new PureLoadResult(new JUnitReport("junit-report.xml"));
+      LatencyCsvParser.of("times.csv", columns).parse(new ByteArrayInputStream(csv.getBytes(Charset.forName("UTF-8"))),
+                                                      result);
+      return result;
+   }
+
+   private static LatencyHistogram histogramOf(long value) {
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(value);
+      return histogram;
+   }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins;
+
+import com.pureload.jenkins.plugin.metrics.PublishMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test recording and merging of publish metrics.
+ */
+public class PublishMetricsTest {
+
+   @Test
+   public void testAdd() {
+      PublishMetrics agent = new PublishMetrics();
+      agent.stop(PublishMetrics.Phase.PARSE, PublishMetrics.start() - 2000000);
+      agent.stop(PublishMetrics.Phase.PARSE, PublishMetrics.start() - 5000000);
+      agent.addBytesRead(4096);
+      agent.addTestCases(10);
+
+      PublishMetrics metrics = new PublishMetrics();
+      metrics.stop(PublishMetrics.Phase.PERSIST, PublishMetrics.start());
+      metrics.add(agent);
+
+      Assert.assertEquals(2, metrics.getCount(PublishMetrics.Phase.PARSE));
+      Assert.assertTrue(metrics.getTotalNanos(PublishMetrics.Phase.PARSE) >= 7000000);
+      Assert.assertTrue(metrics.getMaxNanos(PublishMetrics.Phase.PARSE) >= 5000000);
+      Assert.assertTrue(metrics.getMaxNanos(PublishMetrics.Phase.PARSE) < metrics.getTotalNanos(PublishMetrics.Phase.PARSE));
+      Assert.assertEquals(1, metrics.getCount(PublishMetrics.Phase.PERSIST));
+      Assert.assertEquals(0, metrics.getCount(PublishMetrics.Phase.SCAN));
+      Assert.assertEquals(4096, metrics.getBytesRead());
+      Assert.assertEquals(10, metrics.getTestCases());
+      Assert.assertTrue(metrics.toString(), metrics.toString().contains("4 KB read, 10 testcases parsed"));
+   }
+}
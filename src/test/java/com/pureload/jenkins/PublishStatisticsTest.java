@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins;
+
+import com.pureload.jenkins.plugin.metrics.PublishMetrics;
+import com.pureload.jenkins.plugin.metrics.PublishStatistics;
+import com.pureload.jenkins.plugin.result.LatencyHistogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test aggregation of publish metrics.
+ */
+public class PublishStatisticsTest {
+
+   @Test
+   public void testOnPublished() {
+      PublishStatistics statistics = new PublishStatistics();
+      Assert.assertTrue(statistics.toString(), statistics.toString().startsWith("0 publishes"));
+
+      PublishMetrics first = new PublishMetrics();
+      first.stop(PublishMetrics.Phase.PARSE, PublishMetrics.start() - 2000000);
+      first.stop(PublishMetrics.Phase.PARSE, PublishMetrics.start() - 3000000);
+      first.addBytesRead(2048);
+      first.addTestCases(5);
+      statistics.onPublished(null, first);
+
+      PublishMetrics second = new PublishMetrics();
+      second.stop(PublishMetrics.Phase.PARSE, PublishMetrics.start() - 20000000);
+      second.stop(PublishMetrics.Phase.PERSIST, PublishMetrics.start());
+      second.addBytesRead(1024);
+      second.addTestCases(3);
+      statistics.onPublished(null, second);
+
+      Assert.assertEquals(2, statistics.getPublishes());
+      Assert.assertEquals(3072, statistics.getBytesRead());
+      Assert.assertEquals(8, statistics.getTestCases());
+
+      // One value per publish: the total time of the phase in that publish
+      LatencyHistogram parse = statistics.getPhaseTimes(PublishMetrics.Phase.PARSE);
+      Assert.assertEquals(2, parse.getTotalCount());
+      Assert.assertTrue(parse.getMin() >= 5000 * 0.98);
+      Assert.assertTrue(parse.getMax() >= 20000 * 0.98);
+      Assert.assertEquals(1, statistics.getPhaseTimes(PublishMetrics.Phase.PERSIST).getTotalCount());
+      Assert.assertEquals(0, statistics.getPhaseTimes(PublishMetrics.Phase.SCAN).getTotalCount());
+
+      // Returned histogram is a copy
+      parse.record(1);
+      Assert.assertEquals(2, statistics.getPhaseTimes(PublishMetrics.Phase.PARSE).getTotalCount());
+
+      String summary = statistics.toString();
+      Assert.assertTrue(summary, summary.startsWith("2 publishes, 3 KB read, 8 testcases parsed."));
+      Assert.assertTrue(summary, summary.contains(" parse: median "));
+      Assert.assertFalse(summary, summary.contains(" scan:"));
+   }
+}
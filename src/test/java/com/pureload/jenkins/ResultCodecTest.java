@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pureload.jenkins.plugin.parser.JUnitParser;
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.LatencyHistogram;
+import com.pureload.jenkins.plugin.result.LatencyTimeSeries;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.ResultCodec;
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test writing and reading results in binary format.
+ */
+public class ResultCodecTest {
+
+   /** Results parsed from all JUnit test files should be read back unchanged */
+   @Test
+   public void testRoundTrip() throws Exception {
+      List<PureLoadResult> results = new ArrayList<>();
+      for (String name : new String[] {"/junit-test1.xml", "/junit-test12.xml", "/junit-test13.xml", "/junit-test3.xml"}) {
+         File junitReportFile = new File(getClass().getResource(name).toURI());
+         PureLoadResult result = new PureLoadResult(JUnitParser.parse(junitReportFile));
+         result.setTotalSummaryHtml("<table>\n<tr><td>" + name + "</td></tr>\n</table>\n");
+         result.setPath("results" + name);
+         results.add(result);
+      }
+      // A result with values that are not numbers
+      JUnitReport report = new JUnitReport("custom.xml");
+      TestCaseResult kpi = new TestCaseResult("KPI 1", TestCaseResult.Type.KPI);
+      kpi.setOk(false);
+      kpi.setKpiValue("1.5E3");
+      kpi.setKpiThreshold("0/n.a./10");
+      kpi.setKpiStatus("Unknown");
+      kpi.setKpiTimestamp(1513073823976L);
+      report.setCurrent(kpi);
+      report.addCurrent();
+      PureLoadResult custom = new PureLoadResult(report);
+      Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+      for (String scenario : new String[] {"Login", "Search", "Empty"}) {
+         LatencyHistogram histogram = new LatencyHistogram();
+         for (int i = 0; !scenario.equals("Empty") && (i < 1000); i++) {
+            histogram.record(i * scenario.length() * 997L);
+         }
+         latencies.put(scenario, histogram);
+      }
+      custom.setLatencies(latencies);
+      Map<String, LatencyTimeSeries> timeSeries = new LinkedHashMap<>();
+      LatencyTimeSeries series = new LatencyTimeSeries(1513073823976L);
+      for (int i = 0; i < 5000; i++) {
+         series.record(1513073823976L + i * 997L, (i % 7) * 1000);
+      }
+      timeSeries.put("Login", series);
+      custom.setTimeSeries(timeSeries);
+      results.add(custom);
+
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      ResultCodec.write(results, os);
+      List<PureLoadResult> readResults = ResultCodec.read(new ByteArrayInputStream(os.toByteArray()));
+
+      Assert.assertEquals(results.size(), readResults.size());
+      for (int i = 0; i < results.size(); i++) {
+         assertEquals(results.get(i), readResults.get(i));
+      }
+   }
+
+   /** Files of another format version should be rejected */
+   @Test
+   public void testVersion() throws Exception {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      ResultCodec.write(new ArrayList<PureLoadResult>(), os);
+      byte[] bytes = os.toByteArray();
+      Assert.assertTrue(ResultCodec.read(new ByteArrayInputStream(bytes)).isEmpty());
+      bytes[4]++; // Version follows magic number
+      try {
+         ResultCodec.read(new ByteArrayInputStream(bytes));
+         Assert.fail("Expected IOException");
+      }
+      catch (IOException e) {
+         Assert.assertTrue(e.getMessage(), e.getMessage().contains("version"));
+      }
+   }
+
+   private static void assertEquals(PureLoadResult expected, PureLoadResult actual) {
+      Assert.assertEquals(expected.getPath(), actual.getPath());
+      Assert.assertEquals(expected.getTotalSummaryHtml(), actual.getTotalSummaryHtml());
+      Assert.assertEquals(expected.getTotalSummaryTableHtml(), actual.getTotalSummaryTableHtml());
+      Assert.assertEquals(expected.getLatencies().keySet(), actual.getLatencies().keySet());
+      for (String scenario : expected.getLatencies().keySet()) {
+         LatencyHistogram e = expected.getLatencies().get(scenario);
+         LatencyHistogram a = actual.getLatencies().get(scenario);
+         Assert.assertEquals(e.getTotalCount(), a.getTotalCount());
+         Assert.assertEquals(e.getMin(), a.getMin());
+         Assert.assertEquals(e.getMax(), a.getMax());
+         Assert.assertEquals(e.getMean(), a.getMean(), 0.0);
+         Assert.assertEquals(e.getValueAtPercentile(99), a.getValueAtPercentile(99));
+      }
+      Assert.assertEquals(expected.getTimeSeries().keySet(), actual.getTimeSeries().keySet());
+      for (String scenario : expected.getTimeSeries().keySet()) {
+         LatencyTimeSeries e = expected.getTimeSeries().get(scenario);
+         LatencyTimeSeries a = actual.getTimeSeries().get(scenario);
+         Assert.assertEquals(e.getStart(), a.getStart());
+         Assert.assertEquals(e.getInterval(), a.getInterval());
+         Assert.assertEquals(e.size(), a.size());
+         for (int i = 0; i < e.size(); i++) {
+            Assert.assertEquals(e.getCount(i), a.getCount(i));
+            Assert.assertEquals(e.getMean(i), a.getMean(i), 0.0);
+            Assert.assertEquals(e.getMin(i), a.getMin(i));
+            Assert.assertEquals(e.getMax(i), a.getMax(i));
+         }
+      }
+      JUnitReport expectedReport = expected.getJunitReport();
+      JUnitReport actualReport = actual.getJunitReport();
+      Assert.assertEquals(expectedReport.getFileName(), actualReport.getFileName());
+      Assert.assertEquals(expectedReport.getPlcFileName(), actualReport.getPlcFileName());
+      Assert.assertEquals(expectedReport.getDate(), actualReport.getDate());
+      Assert.assertEquals(expectedReport.getExecTime(), actualReport.getExecTime());
+      Assert.assertEquals(expectedReport.isTruncated(), actualReport.isTruncated());
+      List<TestCaseResult> expectedResults = expectedReport.getResults();
+      List<TestCaseResult> actualResults = actualReport.getResults();
+      Assert.assertEquals(expectedResults.size(), actualResults.size());
+      for (int i = 0; i < expectedResults.size(); i++) {
+         TestCaseResult e = expectedResults.get(i);
+         TestCaseResult a = actualResults.get(i);
+         Assert.assertEquals(e.getName(), a.getName());
+         Assert.assertEquals(e.getType(), a.getType());
+         Assert.assertEquals(e.isOk(), a.isOk());
+         Assert.assertEquals(e.getExecTime(), a.getExecTime(), 0.0F);
+         Assert.assertEquals(e.getKpiMessage(), a.getKpiMessage());
+         Assert.assertEquals(e.getKpiStatus(), a.getKpiStatus());
+         Assert.assertEquals(e.getKpiValue(), a.getKpiValue());
+         Assert.assertEquals(e.getKpiThreshold(), a.getKpiThreshold());
+         Assert.assertEquals(e.getKpiTimestamp(), a.getKpiTimestamp());
+         Assert.assertEquals(e.getKpiMetric(), a.getKpiMetric());
+         Assert.assertEquals(e.getKpiType(), a.getKpiType());
+      }
+   }
+}
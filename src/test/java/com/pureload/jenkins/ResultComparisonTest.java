@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.pureload.jenkins.plugin.integration.ResultComparison;
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test comparing results of two builds.
+ */
+public class ResultComparisonTest {
+
+   @Test
+   public void testCompare() {
+      List<PureLoadResult> baseline = results(scenario("Login", 1.0f, true), scenario("Search", 2.0f, true),
+                                              kpi("Errors", "5", "0/10/0", true), kpi("TPS", "100", "50/0/0", true),
+                                              kpi("Old", "1", "0/10/0", true));
+      List<PureLoadResult> current = results(scenario("Login", 1.5f, true), scenario("Search", 1.0f, true),
+                                             kpi("Errors", "12", "0/10/0", false), kpi("TPS", "80", "50/0/0", true),
+                                             kpi("New", "1", "0/10/0", true));
+
+      ResultComparison comparison = ResultComparison.of(null, current, baseline, ResultComparison.Sort.REGRESSION,
+                                                        0, false);
+      Assert.assertEquals(6, comparison.getTotal());
+      Assert.assertEquals(3, comparison.getRegressions());
+      List<ResultComparison.Delta> deltas = comparison.getDeltas();
+      // Failed first, then by relative regression
+      assertDelta(deltas.get(0), "Errors", 5, 12, 1);
+      Assert.assertEquals(1.4, deltas.get(0).getRelative(), 1e-9);
+      assertDelta(deltas.get(1), "Login", 1.0, 1.5, 0);
+      Assert.assertEquals(0.5, deltas.get(1).getRegression(), 1e-6);
+      assertDelta(deltas.get(2), "TPS", 100, 80, 0);
+      Assert.assertEquals(0.2, deltas.get(2).getRegression(), 1e-9);
+      Assert.assertTrue(deltas.get(2).isRegression());
+      Assert.assertEquals("Search", deltas.get(5).getName());
+      Assert.assertFalse(deltas.get(5).isRegression());
+
+      ResultComparison.Delta added = find(deltas, "New");
+      Assert.assertTrue(added.isAdded());
+      Assert.assertTrue(Double.isNaN(added.getAbsolute()));
+      ResultComparison.Delta removed = find(deltas, "Old");
+      Assert.assertTrue(removed.isRemoved());
+      Assert.assertNull(removed.getOk());
+
+      comparison = ResultComparison.of(null, current, baseline, ResultComparison.Sort.NAME, 2, true);
+      Assert.assertEquals(3, comparison.getTotal());
+      Assert.assertEquals(2, comparison.getDeltas().size());
+      Assert.assertEquals("Login", comparison.getDeltas().get(0).getName());
+   }
+
+   private static void assertDelta(ResultComparison.Delta delta, String name, double baselineValue, double value,
+                                   int statusChange)
+   {
+      Assert.assertEquals(name, delta.getName());
+      Assert.assertEquals(baselineValue, delta.getBaselineValue(), 1e-6);
+      Assert.assertEquals(value, delta.getValue(), 1e-6);
+      Assert.assertEquals(value - baselineValue, delta.getAbsolute(), 1e-6);
+      Assert.assertEquals(statusChange, delta.getStatusChange());
+   }
+
+   private static ResultComparison.Delta find(List<ResultComparison.Delta> deltas, String name) {
+      for (ResultComparison.Delta delta : deltas) {
+         if (delta.getName().equals(name)) {
+            return delta;
+         }
+      }
+      throw new AssertionError("No delta: " + name);
+   }
+
+   private static List<PureLoadResult> results(TestCaseResult... testCases) {
+      JUnitReport report = new JUnitReport("junit.xml");
+      report.setPlcFileName("test.plc");
+      for (TestCaseResult testCase : testCases) {
+         report.setCurrent(testCase);
+         report.addCurrent();
+      }
+      report.complete();
+      return Collections.singletonList(new PureLoadResult(report));
+   }
+
+   private static TestCaseResult scenario(String name, float execTime, boolean ok) {
+      TestCaseResult scenario = new TestCaseResult(name, TestCaseResult.Type.Scenario);
+      scenario.setExecTime(execTime);
+      scenario.setOk(ok);
+      return scenario;
+   }
+
+   private static TestCaseResult kpi(String name, String value, String threshold, boolean ok) {
+      TestCaseResult kpi = new TestCaseResult(name, TestCaseResult.Type.KPI);
+      kpi.setKpiValue(value);
+      kpi.setKpiThreshold(threshold);
+      kpi.setOk(ok);
+      return kpi;
+   }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import hudson.model.Result;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test publishing results in background.
+ */
+public class BackgroundPublishTest {
+   private final PrintStream logger = new PrintStream(new ByteArrayOutputStream());
+
+   /** Results should be published in the build when the queue is full */
+   @Test
+   public void testQueueFull() throws Exception {
+      PublishExecutor executor = new PublishExecutor(1, 1);
+      CountDownLatch release = new CountDownLatch(1);
+      try {
+         Assert.assertNotNull(executor.submit(await(release, Result.SUCCESS)));
+         Assert.assertNotNull(executor.submit(await(release, Result.SUCCESS)));
+         final Thread caller = Thread.currentThread();
+         Result result = PureLoadPublisher.publishInBackground(executor, await(release, Result.SUCCESS),
+                                                               new Callable<Result>() {
+            @Override
+            public Result call() {
+               Assert.assertSame(caller, Thread.currentThread());
+               return Result.FAILURE;
+            }
+         }, false, logger);
+         Assert.assertEquals(Result.FAILURE, result);
+      }
+      finally {
+         release.countDown();
+      }
+   }
+
+   /** Without blocking gate, the build result should not be changed, and the gate result kept by the action */
+   @Test
+   public void testNotBlocking() throws Exception {
+      final PureLoadResultsAction action = new PureLoadResultsAction(null);
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch done = new CountDownLatch(1);
+      action.startProcessing();
+      try {
+         Result result = PureLoadPublisher.publishInBackground(new PublishExecutor(1, 1), new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+               try {
+                  release.await();
+                  return Result.FAILURE;
+               }
+               finally {
+                  action.finishProcessing(Result.FAILURE);
+                  done.countDown();
+               }
+            }
+         }, null, false, logger);
+         Assert.assertEquals(Result.SUCCESS, result);
+         Assert.assertTrue(action.isProcessing());
+         Assert.assertNull(action.getBackgroundResult());
+      }
+      finally {
+         release.countDown();
+      }
+      Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+      Assert.assertFalse(action.isProcessing());
+      Assert.assertEquals(Result.FAILURE, action.getBackgroundResult());
+
+      // Worst result is kept
+      action.startProcessing();
+      action.finishProcessing(Result.SUCCESS);
+      Assert.assertEquals(Result.FAILURE, action.getBackgroundResult());
+      Assert.assertFalse(action.isIncomplete());
+   }
+
+   /** With blocking gate, the result of the task should be applied */
+   @Test
+   public void testBlocking() throws Exception {
+      PublishExecutor executor = new PublishExecutor(1, 1);
+      Result result = PureLoadPublisher.publishInBackground(executor, constant(Result.FAILURE), null, true, logger);
+      Assert.assertEquals(Result.FAILURE, result);
+      result = PureLoadPublisher.publishInBackground(executor, constant(Result.SUCCESS), null, true, logger);
+      Assert.assertEquals(Result.SUCCESS, result);
+
+      try {
+         PureLoadPublisher.publishInBackground(executor, new Callable<Result>() {
+            @Override
+            public Result call() throws IOException {
+               throw new IOException("Can not read");
+            }
+         }, null, true, logger);
+         Assert.fail("Expected IOException");
+      }
+      catch (IOException e) {
+         Assert.assertEquals("Can not read", e.getMessage());
+      }
+   }
+
+   private static Callable<Result> await(final CountDownLatch latch, final Result result) {
+      return new Callable<Result>() {
+         @Override
+         public Result call() throws InterruptedException {
+            latch.await();
+            return result;
+         }
+      };
+   }
+
+   private static Callable<Result> constant(final Result result) {
+      return new Callable<Result>() {
+         @Override
+         public Result call() {
+            return result;
+         }
+      };
+   }
+}
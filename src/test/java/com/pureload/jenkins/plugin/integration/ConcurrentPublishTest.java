@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.util.StreamTaskListener;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * Test publishes of the same build run at the same time, e.g. from parallel pipeline branches.
+ */
+public class ConcurrentPublishTest {
+
+   @Rule
+   public JenkinsRule j = new JenkinsRule();
+
+   /** Concurrent publishes should share one results action, and parse each result directory once */
+   @Test
+   public void testConcurrentPublish() throws Exception {
+      FreeStyleProject project = j.createFreeStyleProject();
+      final FreeStyleBuild build = j.buildAndAssertSuccess(project);
+      for (int i = 1; i <= 3; i++) {
+         resultDir(new File(build.getArtifactsDir(), "run-" + i + "/results"), "Scenario" + i);
+      }
+
+      final PureLoadPublisher publisher = new PureLoadPublisher();
+      final CyclicBarrier barrier = new CyclicBarrier(2);
+      ExecutorService threads = Executors.newFixedThreadPool(2);
+      List<Future<String>> logs = new ArrayList<>();
+      try {
+         for (int i = 0; i < 2; i++) {
+            logs.add(threads.submit(new Callable<String>() {
+               @Override
+               public String call() throws Exception {
+                  ByteArrayOutputStream out = new ByteArrayOutputStream();
+                  StreamTaskListener listener = new StreamTaskListener(out);
+                  barrier.await();
+                  publisher.perform(build, build.getWorkspace(), j.createLocalLauncher(), listener);
+                  listener.getLogger().flush();
+                  return out.toString("UTF-8");
+               }
+            }));
+         }
+         String first = logs.get(0).get(60, TimeUnit.SECONDS);
+         String second = logs.get(1).get(60, TimeUnit.SECONDS);
+
+         Assert.assertEquals(1, build.getActions(PureLoadResultsAction.class).size());
+         PureLoadResultsAction action = build.getAction(PureLoadResultsAction.class);
+         Assert.assertEquals(3, action.getPureLoadResults().size());
+         Assert.assertEquals(3, action.getParsedDirs().size());
+         // One publish parsed all result directories, the other found them parsed
+         String unchanged = "No new PureLoad results (3 unchanged).";
+         Assert.assertTrue(first + second, first.contains(unchanged) != second.contains(unchanged));
+         Assert.assertEquals(Result.SUCCESS, build.getResult());
+      }
+      finally {
+         threads.shutdownNow();
+      }
+   }
+
+   private static void resultDir(File dir, String scenario) throws IOException {
+      File junitDir = new File(dir, ResultDirParser.JUNIT_REPORT_DIR);
+      if (!junitDir.isDirectory() && !junitDir.mkdirs()) {
+         throw new IOException("Can not create " + junitDir);
+      }
+      String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+                   "<testsuites>\n" +
+                   "  <testsuite name=\"test.plc\" timestamp=\"2017-12-04T16:09:48.703\" time=\"51\">\n" +
+                   "    <testcase classname=\"Scenario." + scenario + "\" name=\"" + scenario +
+                   "\" status=\"Ok\" time=\"1004\"/>\n" +
+                   "  </testsuite>\n" +
+                   "</testsuites>\n";
+      Files.write(new File(junitDir, ResultDirParser.JUNIT_REPORT_FILENAME).toPath(),
+                  xml.getBytes(StandardCharsets.UTF_8));
+   }
+}
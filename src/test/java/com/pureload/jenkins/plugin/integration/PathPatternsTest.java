@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import jenkins.util.VirtualFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test Ant style path patterns, and pruning of scanned directories.
+ */
+public class PathPatternsTest {
+
+   /** "**" should match zero and many segments */
+   @Test
+   public void testAnySegments() {
+      PathPatterns patterns = PathPatterns.parse("**/results", null);
+      Assert.assertTrue(matches(patterns, "results"));
+      Assert.assertTrue(matches(patterns, "a/results"));
+      Assert.assertTrue(matches(patterns, "a/b/c/results"));
+      Assert.assertFalse(matches(patterns, "a/results/b"));
+      Assert.assertFalse(matches(patterns, ""));
+
+      patterns = PathPatterns.parse("a/**/b/**", null);
+      Assert.assertTrue(matches(patterns, "a/b"));
+      Assert.assertTrue(matches(patterns, "a/x/b/y/z"));
+      Assert.assertTrue(matches(patterns, "a/b/b"));
+      Assert.assertFalse(matches(patterns, "a/x"));
+      Assert.assertFalse(matches(patterns, "x/b"));
+
+      patterns = PathPatterns.parse(null, "**");
+      Assert.assertTrue(matches(patterns, ""));
+      Assert.assertTrue(matches(patterns, "a/b"));
+   }
+
+   /** '*' and '?' should match within a segment only */
+   @Test
+   public void testSegmentWildcards() {
+      PathPatterns patterns = PathPatterns.parse("run-*/res?lts", null);
+      Assert.assertTrue(matches(patterns, "run-1/results"));
+      Assert.assertTrue(matches(patterns, "run-/resalts"));
+      Assert.assertFalse(matches(patterns, "run-1/x/results"));
+      Assert.assertFalse(matches(patterns, "run-1/reslts"));
+      Assert.assertFalse(matches(patterns, "run/results"));
+
+      // Several patterns, with separators and blanks
+      patterns = PathPatterns.parse(" /a/ , b\\c ,, ", null);
+      Assert.assertTrue(matches(patterns, "a"));
+      Assert.assertTrue(matches(patterns, "b/c"));
+      Assert.assertFalse(matches(patterns, "b"));
+   }
+
+   /** Segment matching should backtrack when a '*' matched too little */
+   @Test
+   public void testMatchSegment() {
+      Assert.assertTrue(PathPatterns.matchSegment("*", ""));
+      Assert.assertTrue(PathPatterns.matchSegment("*", "abc"));
+      Assert.assertTrue(PathPatterns.matchSegment("a*c", "abbbc"));
+      Assert.assertTrue(PathPatterns.matchSegment("a*b*c", "aXbYbZc"));
+      Assert.assertTrue(PathPatterns.matchSegment("*ab", "aab"));
+      Assert.assertTrue(PathPatterns.matchSegment("*a?c", "abcabc"));
+      Assert.assertTrue(PathPatterns.matchSegment("a**", "a"));
+      Assert.assertFalse(PathPatterns.matchSegment("a*c", "abcd"));
+      Assert.assertFalse(PathPatterns.matchSegment("?", ""));
+      Assert.assertFalse(PathPatterns.matchSegment("abc", "ab"));
+      Assert.assertFalse(PathPatterns.matchSegment("ab", "abc"));
+   }
+
+   /** Only the literal children should be visited, unless a wildcard is present at that level */
+   @Test
+   public void testLiteralChildren() {
+      PathPatterns patterns = PathPatterns.parse("a/b, a/c/*, d", null);
+      PathPatterns.Match root = patterns.root();
+      Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("a", "d")), root.literalChildren());
+      PathPatterns.Match a = root.child("a");
+      Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("b", "c")), a.literalChildren());
+      Assert.assertNull(a.child("c").literalChildren());
+      Assert.assertNull(PathPatterns.parse("**/x", null).root().literalChildren());
+      Assert.assertNull(PathPatterns.parse("a?/x", null).root().literalChildren());
+   }
+
+   /** No descendant should match when all patterns are consumed or failed */
+   @Test
+   public void testCanMatchDescendant() {
+      PathPatterns patterns = PathPatterns.parse("a/b", null);
+      PathPatterns.Match b = patterns.root().child("a").child("b");
+      Assert.assertTrue(b.matches());
+      Assert.assertFalse(b.canMatchDescendant());
+      Assert.assertFalse(b.child("c").matches());
+      Assert.assertFalse(b.child("c").canMatchDescendant());
+      Assert.assertFalse(patterns.root().child("x").canMatchDescendant());
+
+      PathPatterns.Match any = PathPatterns.parse("a/**", null).root().child("a");
+      Assert.assertTrue(any.matches());
+      Assert.assertTrue(any.canMatchDescendant());
+      Assert.assertTrue(any.child("x").child("y").canMatchDescendant());
+
+      Assert.assertFalse(PathPatterns.parse(null, null).root().canMatchDescendant());
+      Assert.assertFalse(PathPatterns.parse(null, null).root().matches());
+   }
+
+   /** Excluded directories should not be entered, and only included result directories parsed */
+   @Test
+   public void testScanPruning() throws Exception {
+      File root = Files.createTempDirectory("pureload-scan").toFile();
+      try {
+         resultDir(root, "run-1/results");
+         resultDir(root, "run-2/results");
+         resultDir(root, "tmp/results");
+         resultDir(root, "run-3/old/results");
+         final List<String> parsed = Collections.synchronizedList(new ArrayList<String>());
+         ResultDirScanner.ResultParser parser = new ResultDirScanner.ResultParser() {
+            @Override
+            public PureLoadResult parse(VirtualFile resultDir, String path, ResultDirState state) {
+               parsed.add(resultDir.getParent().getName() + '/' + resultDir.getName());
+               return new PureLoadResult(new JUnitReport("junit-report.xml"));
+            }
+         };
+
+         List<ResultDirScanner.Outcome> outcomes =
+             new ResultDirScanner(parser, "**/results", "tmp, */old", 0, null).scan(VirtualFile.forFile(root));
+         List<String> paths = new ArrayList<>();
+         for (ResultDirScanner.Outcome outcome : outcomes) {
+            paths.add(outcome.getPath());
+         }
+         Collections.sort(paths);
+         Assert.assertEquals(Arrays.asList("run-1/results", "run-2/results"), paths);
+         Assert.assertEquals(2, parsed.size());
+
+         outcomes = new ResultDirScanner(parser, "run-2/results", null, 0, null).scan(VirtualFile.forFile(root));
+         Assert.assertEquals(1, outcomes.size());
+         Assert.assertEquals("run-2/results", outcomes.get(0).getPath());
+      }
+      finally {
+         delete(root);
+      }
+   }
+
+   /** @return true if path (segments separated by '/') is matched */
+   private static boolean matches(PathPatterns patterns, String path) {
+      PathPatterns.Match match = patterns.root();
+      for (String name : path.isEmpty() ? new String[0] : path.split("/")) {
+         match = match.child(name);
+      }
+      return match.matches();
+   }
+
+   private static void resultDir(File root, String path) throws IOException {
+      File junitDir = new File(new File(root, path), ResultDirParser.JUNIT_REPORT_DIR);
+      if (!junitDir.mkdirs()) {
+         throw new IOException("Can not create " + junitDir);
+      }
+      Files.write(new File(junitDir, ResultDirParser.JUNIT_REPORT_FILENAME).toPath(),
+                  "<testsuites/>".getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static void delete(File file) {
+      File[] children = file.listFiles();
+      if (children != null) {
+         for (File child : children) {
+            delete(child);
+         }
+      }
+      if (!file.delete()) {
+         file.deleteOnExit();
+      }
+   }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.integration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import jenkins.util.VirtualFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cache of parsed result directories.
+ */
+public class ResultCacheTest {
+
+   /** Same result directory published again should be found without reading its files */
+   @Test
+   public void testHit() throws Exception {
+      File root = Files.createTempDirectory("pureload-cache").toFile();
+      try {
+         resultDir(root, "results", "Login");
+         AtomicInteger opened = new AtomicInteger();
+         VirtualFile archive = new CountingFile(VirtualFile.forFile(root), opened);
+         ResultCache cache = new ResultCache(1024 * 1024);
+         ResultDirScanner scanner = new ResultDirScanner(cache.parser(new ResultDirParser()));
+
+         PureLoadResult result = scanner.scan(archive).get(0).getResult();
+         Assert.assertEquals(1, cache.getMisses());
+         Assert.assertEquals(0, cache.getHits());
+         Assert.assertTrue(opened.get() > 0);
+
+         opened.set(0);
+         List<ResultDirScanner.Outcome> outcomes = scanner.scan(archive);
+         Assert.assertEquals(1, cache.getMisses());
+         Assert.assertEquals(1, cache.getHits());
+         Assert.assertEquals("No input file should be opened on a hit", 0, opened.get());
+         PureLoadResult cached = outcomes.get(0).getResult();
+         Assert.assertNotSame(result, cached);
+         Assert.assertEquals("results", outcomes.get(0).getPath());
+         Assert.assertEquals("Login", cached.getJunitReport().getScenarios().get(0).getName());
+      }
+      finally {
+         delete(root);
+      }
+   }
+
+   /** Results archived again (e.g. by a rebuild) with same path and file times should be found */
+   @Test
+   public void testKey() throws Exception {
+      File root = Files.createTempDirectory("pureload-cache").toFile();
+      try {
+         ResultCache cache = new ResultCache(1024 * 1024);
+         ResultDirScanner.ResultParser parser = cache.parser(new ResultDirParser());
+         VirtualFile build1 = resultDir(root, "build1", "Login");
+         File junit1 = new File(root, "build1/" + ResultDirParser.JUNIT_REPORT_DIR + '/' +
+                                      ResultDirParser.JUNIT_REPORT_FILENAME);
+         VirtualFile build2 = resultDir(root, "build2", "Login");
+         File junit2 = new File(root, "build2/" + ResultDirParser.JUNIT_REPORT_DIR + '/' +
+                                      ResultDirParser.JUNIT_REPORT_FILENAME);
+         Assert.assertTrue(junit2.setLastModified(junit1.lastModified()));
+
+         parse(parser, build1, "results");
+         parse(parser, build2, "results");
+         Assert.assertEquals(1, cache.getMisses());
+         Assert.assertEquals(1, cache.getHits());
+
+         // Other path, changed file, and other parser configuration
+         parse(parser, build1, "other/results");
+         Assert.assertTrue(junit2.setLastModified(junit1.lastModified() - 60000));
+         parse(parser, build2, "results");
+         parse(cache.parser(new ResultDirParser(true)), build1, "results");
+         Assert.assertEquals(4, cache.getMisses());
+         Assert.assertEquals(1, cache.getHits());
+         Assert.assertEquals(4, cache.getEntryCount());
+      }
+      finally {
+         delete(root);
+      }
+   }
+
+   /** Least recently used entries should be evicted when the size exceeds the budget */
+   @Test
+   public void testEviction() throws Exception {
+      File root = Files.createTempDirectory("pureload-cache").toFile();
+      try {
+         VirtualFile[] dirs = new VirtualFile[5];
+         for (int i = 0; i < dirs.length; i++) {
+            dirs[i] = resultDir(root, Integer.toString(i), "Scenario" + i);
+         }
+         // Entries of same size
+         ResultCache sizing = new ResultCache(1024 * 1024);
+         parse(sizing.parser(new ResultDirParser()), dirs[0], "0");
+         long entrySize = sizing.getSize();
+         Assert.assertTrue(entrySize > 0);
+
+         ResultCache cache = new ResultCache(4 * entrySize);
+         ResultDirScanner.ResultParser parser = cache.parser(new ResultDirParser());
+         for (int i = 0; i < 4; i++) {
+            parse(parser, dirs[i], Integer.toString(i));
+         }
+         Assert.assertEquals(4, cache.getEntryCount());
+         Assert.assertEquals(4 * entrySize, cache.getSize());
+         Assert.assertEquals(0, cache.getEvictions());
+
+         parse(parser, dirs[0], "0"); // Hit; now most recently used
+         parse(parser, dirs[4], "4"); // Evicts 1
+         Assert.assertEquals(4, cache.getEntryCount());
+         Assert.assertEquals(4 * entrySize, cache.getSize());
+         Assert.assertEquals(1, cache.getEvictions());
+         Assert.assertEquals(1, cache.getHits());
+         Assert.assertEquals(5, cache.getMisses());
+
+         parse(parser, dirs[0], "0");
+         parse(parser, dirs[1], "1");
+         Assert.assertEquals(2, cache.getHits());
+         Assert.assertEquals(6, cache.getMisses());
+         Assert.assertEquals(2, cache.getEvictions());
+
+         // Entries larger than a quarter of the budget are not cached
+         ResultCache small = new ResultCache(4 * entrySize - 1);
+         parse(small.parser(new ResultDirParser()), dirs[0], "0");
+         Assert.assertEquals(0, small.getEntryCount());
+         Assert.assertEquals(0, small.getSize());
+
+         cache.clear();
+         Assert.assertEquals(0, cache.getEntryCount());
+         Assert.assertEquals(0, cache.getSize());
+      }
+      finally {
+         delete(root);
+      }
+   }
+
+   private static PureLoadResult parse(ResultDirScanner.ResultParser parser, VirtualFile dir, String path)
+       throws Exception
+   {
+      return parser.parse(dir, path, ResultDirState.of(dir));
+   }
+
+   private static VirtualFile resultDir(File root, String name, String scenario) throws IOException {
+      File dir = new File(root, name);
+      File junitDir = new File(dir, ResultDirParser.JUNIT_REPORT_DIR);
+      if (!junitDir.isDirectory() && !junitDir.mkdirs()) {
+         throw new IOException("Can not create " + junitDir);
+      }
+      String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+                   "<testsuites>\n" +
+                   "  <testsuite name=\"test.plc\" timestamp=\"2017-12-04T16:09:48.703\" time=\"51\">\n" +
+                   "    <testcase classname=\"Scenario." + scenario + "\" name=\"" + scenario +
+                   "\" status=\"Ok\" time=\"1004\"/>\n" +
+                   "  </testsuite>\n" +
+                   "</testsuites>\n";
+      Files.write(new File(junitDir, ResultDirParser.JUNIT_REPORT_FILENAME).toPath(),
+                  xml.getBytes(StandardCharsets.UTF_8));
+      return VirtualFile.forFile(dir);
+   }
+
+   private static void delete(File file) {
+      File[] children = file.listFiles();
+      if (children != null) {
+         for (File child : children) {
+            delete(child);
+         }
+      }
+      if (!file.delete()) {
+         file.deleteOnExit();
+      }
+   }
+
+   /** File counting the number of times files in its tree are opened. */
+   private static class CountingFile extends VirtualFile {
+      private final VirtualFile file;
+      private final AtomicInteger opened;
+
+      CountingFile(VirtualFile file, AtomicInteger opened) {
+         this.file = file;
+         this.opened = opened;
+      }
+
+      @Override
+      public InputStream open() throws IOException {
+         opened.incrementAndGet();
+         return file.open();
+      }
+
+      @Override
+      public VirtualFile child(String name) { return new CountingFile(file.child(name), opened); }
+
+      @Override
+      public VirtualFile[] list() throws IOException {
+         VirtualFile[] children = file.list();
+         for (int i = 0; i < children.length; i++) {
+            children[i] = new CountingFile(children[i], opened);
+         }
+         return children;
+      }
+
+      @Override
+      public VirtualFile getParent() { return new CountingFile(file.getParent(), opened); }
+
+      @Override
+      public String getName() { return file.getName(); }
+      @Override
+      public URI toURI() { return file.toURI(); }
+      @Override
+      public boolean isDirectory() throws IOException { return file.isDirectory(); }
+      @Override
+      public boolean isFile() throws IOException { return file.isFile(); }
+      @Override
+      public boolean exists() throws IOException { return file.exists(); }
+      @Override
+      public String[] list(String glob) throws IOException { return file.list(glob); }
+      @Override
+      public long length() throws IOException { return file.length(); }
+      @Override
+      public long lastModified() throws IOException { return file.lastModified(); }
+      @Override
+      public boolean canRead() throws IOException { return file.canRead(); }
+   }
+}
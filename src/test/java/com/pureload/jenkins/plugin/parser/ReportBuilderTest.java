@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.parser;
+
+import java.text.ParseException;
+
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test parsing of time attributes and KPI system-out.
+ */
+public class ReportBuilderTest {
+
+   @Test
+   public void testParseTime() throws Exception {
+      Assert.assertEquals(0, ReportBuilder.parseTime(null));
+      Assert.assertEquals(0, ReportBuilder.parseTime(""));
+      Assert.assertEquals(1004, ReportBuilder.parseTime("1004"));
+      Assert.assertEquals(12, ReportBuilder.parseTime("12.9"));
+      Assert.assertEquals(0, ReportBuilder.parseTime(".5"));
+      Assert.assertEquals(-5, ReportBuilder.parseTime("-5"));
+      Assert.assertEquals(5, ReportBuilder.parseTime("+5"));
+      Assert.assertEquals(5, ReportBuilder.parseTime("5s"));
+      // Grouping separators
+      Assert.assertEquals(1234, ReportBuilder.parseTime("1,234"));
+      Assert.assertEquals(1234567, ReportBuilder.parseTime("1,234,567.8"));
+      Assert.assertEquals(1, ReportBuilder.parseTime("1,"));
+      assertInvalidTime(",5");
+      assertInvalidTime("abc");
+      assertInvalidTime("-");
+   }
+
+   private static void assertInvalidTime(String time) {
+      try {
+         ReportBuilder.parseTime(time);
+         Assert.fail("Expected ParseException: " + time);
+      }
+      catch (ParseException e) {
+         // Expected
+      }
+   }
+
+   @Test
+   public void testParseKpiSystemOut() {
+      TestCaseResult kpi = parse("KpiResult {kpi=Kpi {id=1, type=Summary, metric='Average', threshold=25/105/20}, " +
+                                 "timestamp=1544448264144, value=108.213, status=High, msg='Threshold breached'}");
+      Assert.assertEquals("25/105/20", kpi.getKpiThreshold());
+      Assert.assertEquals(1544448264144L, kpi.getKpiTimestamp());
+      Assert.assertEquals("108.213", kpi.getKpiValue());
+      Assert.assertEquals("High", kpi.getKpiStatus());
+      Assert.assertEquals("Summary", kpi.getKpiType());
+      Assert.assertEquals("Average", kpi.getKpiMetric());
+
+      // Signed value and value with leading '.'; no type or metric
+      kpi = parse("KpiResult {kpi=Kpi {threshold=0/10/5}, timestamp=1, value=-1.5, status=Low, msg=''}");
+      Assert.assertEquals("-1.5", kpi.getKpiValue());
+      Assert.assertEquals(-1.5, kpi.getKpiDoubleValue(), 0);
+      Assert.assertNull(kpi.getKpiType());
+      Assert.assertNull(kpi.getKpiMetric());
+      kpi = parse("KpiResult {kpi=Kpi {threshold=0/10/5}, timestamp=1, value=.5, status=OK, msg=''}");
+      Assert.assertEquals(".5", kpi.getKpiValue());
+      Assert.assertEquals(0.5, kpi.getKpiDoubleValue(), 0);
+
+      // Keys repeated in message after the fields do not replace the values of the KPI
+      kpi = parse("KpiResult {kpi=Kpi {threshold=0/10/5}, timestamp=2, value=1.0, status=OK, " +
+                  "msg='timestamp=3, value=99, status=High,'}");
+      Assert.assertEquals(2, kpi.getKpiTimestamp());
+      Assert.assertEquals("1.0", kpi.getKpiValue());
+      Assert.assertEquals("OK", kpi.getKpiStatus());
+
+      // Missing key; nothing is set
+      kpi = parse("KpiResult {kpi=Kpi {threshold=0/10/5}, timestamp=2, value=1.0, msg=''}");
+      Assert.assertEquals("", kpi.getKpiValue());
+      Assert.assertEquals("", kpi.getKpiThreshold());
+      Assert.assertEquals("", kpi.getKpiStatus());
+      Assert.assertEquals(0, kpi.getKpiTimestamp());
+      kpi = parse("KpiResult {kpi=Kpi {threshold=0/10/5}, timestamp=, value=1.0, status=OK}");
+      Assert.assertEquals("", kpi.getKpiValue());
+      kpi = parse("");
+      Assert.assertEquals("", kpi.getKpiValue());
+   }
+
+   private static TestCaseResult parse(String systemOut) {
+      TestCaseResult kpi = new TestCaseResult("KPI", TestCaseResult.Type.KPI);
+      ReportBuilder.parseKpiSystemOut(systemOut, kpi);
+      return kpi;
+   }
+}
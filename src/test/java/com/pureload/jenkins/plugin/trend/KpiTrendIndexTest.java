@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2019 PureLoad Software Group AB. All rights reserved.
+ */
+
+package com.pureload.jenkins.plugin.trend;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import com.pureload.jenkins.plugin.result.JUnitReport;
+import com.pureload.jenkins.plugin.result.PureLoadResult;
+import com.pureload.jenkins.plugin.result.TestCaseResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test KPI series and the KPI trend index.
+ */
+public class KpiTrendIndexTest {
+
+   /** Builds should be kept in build order, replaced if added again, and the oldest dropped when full */
+   @Test
+   public void testSeries() {
+      KpiSeries series = new KpiSeries("test.plc", "TPS", 3);
+      series.add(2, 20, true);
+      series.add(1, 10, true);
+      series.add(4, 40, false);
+      assertBuilds(series, 1, 2, 4);
+      Assert.assertEquals(10, series.getValue(0), 0);
+      Assert.assertFalse(series.isOk(2));
+
+      // Same build replaces value
+      series.add(2, 25, false);
+      assertBuilds(series, 1, 2, 4);
+      Assert.assertEquals(25, series.getValue(1), 0);
+      Assert.assertFalse(series.isOk(1));
+
+      // Full; oldest dropped
+      series.add(3, 30, true);
+      assertBuilds(series, 2, 3, 4);
+      series.add(5, 50, true);
+      assertBuilds(series, 3, 4, 5);
+      // Older than all builds kept
+      series.add(1, 10, true);
+      assertBuilds(series, 3, 4, 5);
+
+      series.remove(4);
+      assertBuilds(series, 3, 5);
+      series.remove(6);
+      assertBuilds(series, 3, 5);
+      Assert.assertEquals(50, series.getValue(1), 0);
+
+      assertBuilds(series.copyOfLast(1), 5);
+   }
+
+   /** Values before a build should be returned most recent first, skipping values that are not numbers */
+   @Test
+   public void testValues() throws Exception {
+      File dir = Files.createTempDirectory("pureload-trend").toFile();
+      try {
+         KpiTrendIndex index = new KpiTrendIndex(new File(dir, KpiTrendIndex.INDEX_FILENAME), 100);
+         index.update(1, results(kpi("TPS", "10")));
+         index.update(2, results(kpi("TPS", "n.a.")));
+         index.update(3, results(kpi("TPS", "30")));
+         index.update(4, results(kpi("TPS", "40")));
+
+         assertValues(index.getValues("test.plc", "TPS", 4, 10), 30, 10);
+         assertValues(index.getValues("test.plc", "TPS", 5, 2), 40, 30);
+         assertValues(index.getValues("test.plc", "TPS", 1, 10));
+         assertValues(index.getValues("test.plc", "Other", 5, 10));
+
+         index.remove(3);
+         assertValues(index.getValues("test.plc", "TPS", 5, 10), 40, 10);
+      }
+      finally {
+         delete(dir);
+      }
+   }
+
+   /** Index should be read back unchanged */
+   @Test
+   public void testSaveLoad() throws Exception {
+      File dir = Files.createTempDirectory("pureload-trend").toFile();
+      try {
+         File file = new File(dir, KpiTrendIndex.INDEX_FILENAME);
+         KpiTrendIndex index = new KpiTrendIndex(file, 100);
+         for (int build = 1; build <= 5; build++) {
+            index.update(build, results(kpi("TPS", Integer.toString(build * 10)), kpi("Errors", "n.a.")));
+         }
+         Assert.assertTrue(file.exists());
+
+         KpiTrendIndex loaded = new KpiTrendIndex(file, 100);
+         loaded.load();
+         List<KpiSeries> expected = index.getSeries(KpiTrendIndex.MAX_BUILDS);
+         List<KpiSeries> actual = loaded.getSeries(KpiTrendIndex.MAX_BUILDS);
+         Assert.assertEquals(expected.size(), actual.size());
+         for (int i = 0; i < expected.size(); i++) {
+            KpiSeries e = expected.get(i);
+            KpiSeries a = actual.get(i);
+            Assert.assertEquals(e.getPlcName(), a.getPlcName());
+            Assert.assertEquals(e.getKpiName(), a.getKpiName());
+            Assert.assertEquals(e.size(), a.size());
+            for (int j = 0; j < e.size(); j++) {
+               Assert.assertEquals(e.getBuild(j), a.getBuild(j));
+               Assert.assertEquals(e.getValue(j), a.getValue(j), 0);
+               Assert.assertEquals(e.isOk(j), a.isOk(j));
+            }
+         }
+         Assert.assertTrue(Double.isNaN(actual.get(1).getValue(0)));
+      }
+      finally {
+         delete(dir);
+      }
+   }
+
+   /** KPIs no longer published should be dropped, and the number of KPIs bounded */
+   @Test
+   public void testPrune() throws Exception {
+      File dir = Files.createTempDirectory("pureload-trend").toFile();
+      try {
+         KpiTrendIndex index = new KpiTrendIndex(new File(dir, KpiTrendIndex.INDEX_FILENAME), 2);
+         index.update(1, results(kpi("A", "1")));
+         index.update(2, results(kpi("B", "1")));
+         index.update(3, results(kpi("C", "1")));
+         Assert.assertEquals(2, index.size());
+         Assert.assertEquals(0, index.getValues("test.plc", "A", 4, 10).length);
+         Assert.assertEquals(1, index.getValues("test.plc", "B", 4, 10).length);
+
+         // Last value of KPI removed
+         index.remove(3);
+         Assert.assertEquals(1, index.size());
+
+         // Not published in the last builds
+         index.update(2 + KpiTrendIndex.MAX_BUILDS, results(kpi("D", "1")));
+         Assert.assertEquals(1, index.size());
+         Assert.assertEquals(1, index.getValues("test.plc", "D", Integer.MAX_VALUE, 10).length);
+      }
+      finally {
+         delete(dir);
+      }
+   }
+
+   private static void assertBuilds(KpiSeries series, int... builds) {
+      Assert.assertEquals(builds.length, series.size());
+      for (int i = 0; i < builds.length; i++) {
+         Assert.assertEquals(builds[i], series.getBuild(i));
+      }
+   }
+
+   private static void assertValues(double[] actual, double... expected) {
+      Assert.assertEquals(expected.length, actual.length);
+      for (int i = 0; i < expected.length; i++) {
+         Assert.assertEquals(expected[i], actual[i], 0);
+      }
+   }
+
+   private static List<PureLoadResult> results(TestCaseResult... kpis) {
+      JUnitReport report = new JUnitReport("junit.xml");
+      report.setPlcFileName("test.plc");
+      for (TestCaseResult kpi : kpis) {
+         report.setCurrent(kpi);
+         report.addCurrent();
+      }
+      report.complete();
+      return Collections.singletonList(new PureLoadResult(report));
+   }
+
+   private static TestCaseResult kpi(String name, String value) {
+      TestCaseResult kpi = new TestCaseResult(name, TestCaseResult.Type.KPI);
+      kpi.setKpiValue(value);
+      kpi.setOk(true);
+      return kpi;
+   }
+
+   private static void delete(File file) {
+      File[] children = file.listFiles();
+      if (children != null) {
+         for (File child : children) {
+            delete(child);
+         }
+      }
+      if (!file.delete()) {
+         file.deleteOnExit();
+      }
+   }
+}